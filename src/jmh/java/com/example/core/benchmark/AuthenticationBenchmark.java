@@ -0,0 +1,137 @@
+package com.example.core.benchmark;
+
+import com.example.core.dto.UserDto;
+import com.example.core.model.Roles;
+import com.example.core.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный бенчмарк: аутентифицированные запросы {@code GET /image/list} в секунду
+ * при разных способах аутентификации.
+ * <ul>
+ *     <li>{@code password} — каждый запрос предваряется входом по паролю (bcrypt на каждый вызов API);</li>
+ *     <li>{@code session} — один вход и повторное использование cookie сессии;</li>
+ *     <li>{@code token} — API-токен в заголовке Authorization, без сессии и без bcrypt.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private static final String EMAIL = "auth-bench@example.com";
+
+    private static final String PASSWORD = "password";
+
+    private static final Pattern SESSION_COOKIE = Pattern.compile("JSESSIONID=([^;]+)");
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    /**
+     * Способ аутентификации.
+     */
+    @Param({"password", "session", "token"})
+    private String mode;
+
+    private BenchmarkContext context;
+
+    private HttpClient client;
+
+    private String base;
+
+    private URI listUri;
+
+    private String session;
+
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.startServer();
+
+        UserDto dto = new UserDto();
+        dto.setEmail(EMAIL);
+        dto.setPassword(PASSWORD);
+        dto.setRole(Roles.USER);
+        context.getBean(UserService.class).registerUser(dto);
+
+        base = "http://localhost:" + context.getPort();
+        listUri = URI.create(base + "/image/list?userEmail=" + URLEncoder.encode(EMAIL, StandardCharsets.UTF_8) + "&size=20");
+        // Без обработчика cookie: каждый режим сам решает, какие учётные данные отправлять
+        client = HttpClient.newBuilder()
+                // Без попытки перехода на h2c: она добавляет к каждому запросу задержку, не связанную с аутентификацией
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        session = login();
+        HttpResponse<String> issued = client.send(HttpRequest.newBuilder(URI.create(base + "/user/token"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(issued.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("Токен не выпущен: " + issued.statusCode() + " " + issued.body());
+        }
+        token = matcher.group(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    /**
+     * @return Статус ответа на запрос списка изображений.
+     */
+    @Benchmark
+    public int list() throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(listUri).GET();
+        switch (mode) {
+            case "password" -> request.header("Cookie", "JSESSIONID=" + login());
+            case "session" -> request.header("Cookie", "JSESSIONID=" + session);
+            case "token" -> request.header("Authorization", "Bearer " + token);
+            default -> throw new IllegalArgumentException("Неизвестный режим: " + mode);
+        }
+        int status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException("Запрос не аутентифицирован: " + status);
+        }
+        return status;
+    }
+
+    /**
+     * Вход по форме.
+     *
+     * @return Идентификатор новой сессии.
+     */
+    private String login() throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "username=" + URLEncoder.encode(EMAIL, StandardCharsets.UTF_8) + "&password=" + PASSWORD))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        return response.headers().allValues("Set-Cookie").stream()
+                .map(SESSION_COOKIE::matcher)
+                .filter(Matcher::find)
+                .map(matcher -> matcher.group(1))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Вход не выполнен: " + response.statusCode()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.core.benchmark;
+
+import com.example.core.CoreApplication;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Контекст приложения для бенчмарков.
+ * Поднимает приложение на H2 (как в application-test.properties) с отдельным каталогом
+ * хранилища и заглушкой RabbitTemplate, которая сразу подтверждает каждое сообщение.
+ * Веб-сервер запускается только для нагрузочных бенчмарков через HTTP.
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private final Path uploadDir;
+
+    private BenchmarkContext(ConfigurableApplicationContext context, Path uploadDir) {
+        this.context = context;
+        this.uploadDir = uploadDir;
+    }
+
+    /**
+     * Запускает приложение с отдельной базой H2 и временным каталогом хранилища.
+     *
+     * @return Запущенный контекст.
+     * @throws IOException Если не удалось создать каталог хранилища.
+     */
+    public static BenchmarkContext start() throws IOException {
+        return start(WebApplicationType.NONE);
+    }
+
+    /**
+     * Запускает приложение с веб-сервером на случайном порту.
+     *
+     * @param args Дополнительные свойства в виде аргументов командной строки ("--имя=значение").
+     * @return Запущенный контекст.
+     * @throws IOException Если не удалось создать каталог хранилища.
+     */
+    public static BenchmarkContext startServer(String... args) throws IOException {
+        String[] serverArgs = Arrays.copyOf(args, args.length + 2);
+        serverArgs[args.length] = "--server.port=0";
+        // Ограничитель частоты не должен искажать замер нагрузки от одного пользователя
+        serverArgs[args.length + 1] = "--rate-limit.enabled=false";
+        return start(WebApplicationType.SERVLET, serverArgs);
+    }
+
+    private static BenchmarkContext start(WebApplicationType webApplicationType, String... extraArgs) throws IOException {
+        Path uploadDir = Files.createTempDirectory("core-benchmark-");
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=test",
+                "--spring.datasource.password=test",
+                "--spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                // Квоты не должны останавливать длительный замер загрузки
+                "--storage.quota.user.max-bytes=1024TB",
+                "--storage.quota.user.max-images=2000000000",
+                "--upload.dir=" + uploadDir));
+        args.addAll(Arrays.asList(extraArgs));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CoreApplication.class, StubRabbitConfig.class)
+                .web(webApplicationType)
+                // Аргументы командной строки имеют приоритет над application.properties
+                .run(args.toArray(new String[0]));
+        return new BenchmarkContext(context, uploadDir);
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * @return Порт веб-сервера, запущенного {@link #startServer(String...)}.
+     */
+    public int getPort() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(uploadDir);
+    }
+
+    /**
+     * Заменяет RabbitTemplate заглушкой: брокер в бенчмарках не нужен,
+     * а фоновая отправка уведомлений не должна ждать таймаута подтверждения.
+     */
+    @Configuration
+    static class StubRabbitConfig {
+
+        @Bean
+        public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+            // Фабрика соединений не открывает соединение, пока через неё ничего не отправлено
+            return new RabbitTemplate(connectionFactory) {
+                @Override
+                public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+                    if (correlationData != null) {
+                        correlationData.getFuture().set(new CorrelationData.Confirm(true, null));
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.core.benchmark;
+
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.UserDto;
+import com.example.core.model.Image;
+import com.example.core.model.Roles;
+import com.example.core.model.Users;
+import com.example.core.repository.ImageRepository;
+import com.example.core.repository.UsersRepository;
+import com.example.core.service.ImageService;
+import com.example.core.service.UserService;
+import com.example.core.storage.BlobStore;
+import com.example.core.storage.StoredBlob;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бенчмарки горячих путей {@link ImageService}: загрузка, скачивание и получение списка изображений.
+ * Каждый пользователь заранее получает {@link #IMAGES_PER_USER} изображений с общим содержимым.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageServiceBenchmark {
+
+    private static final int IMAGES_PER_USER = 100;
+
+    /**
+     * Размер изображения в байтах.
+     */
+    @Param({"16384", "1048576"})
+    private int imageSize;
+
+    /**
+     * Количество зарегистрированных пользователей.
+     */
+    @Param({"1", "100"})
+    private int userCount;
+
+    private BenchmarkContext context;
+
+    private ImageService imageService;
+
+    private byte[] payload;
+
+    private final List<String> emails = new ArrayList<>();
+
+    private final List<Integer> imageIds = new ArrayList<>();
+
+    private final AtomicLong uploads = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        imageService = context.getBean(ImageService.class);
+        UserService userService = context.getBean(UserService.class);
+        UsersRepository usersRepository = context.getBean(UsersRepository.class);
+        ImageRepository imageRepository = context.getBean(ImageRepository.class);
+
+        payload = new byte[imageSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        StoredBlob blob = context.getBean(BlobStore.class).put(new ByteArrayInputStream(payload));
+
+        for (int i = 0; i < userCount; i++) {
+            UserDto dto = new UserDto();
+            dto.setEmail("bench-" + i + "@example.com");
+            dto.setPassword("password");
+            dto.setRole(Roles.USER);
+            userService.registerUser(dto);
+            emails.add(dto.getEmail());
+
+            // Метаданные вставляются напрямую: содержимое у всех изображений общее
+            Users user = usersRepository.findByEmail(dto.getEmail()).orElseThrow();
+            List<Image> images = new ArrayList<>(IMAGES_PER_USER);
+            for (int j = 0; j < IMAGES_PER_USER; j++) {
+                Image image = new Image();
+                image.setName("seed-" + j + ".png");
+                image.setOriginalFileName("seed-" + j + ".png");
+                image.setFileSize(blob.size());
+                image.setChecksum(blob.checksum());
+                image.setBlobKey(blob.key());
+                image.setContentType("image/png");
+                image.setUploadDate(new Date(System.currentTimeMillis() - j * 1000L));
+                image.setUser(user);
+                images.add(image);
+            }
+            imageRepository.insertAll(images);
+            imageIds.add(list(dto.getEmail()).getItems().get(0).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public void upload() throws IOException {
+        // Каждая загрузка уникальна, иначе хранилище отвечало бы дедупликацией
+        imageService.uploadImages(new PayloadFile(uploads.incrementAndGet(), payload), randomEmail());
+    }
+
+    @Benchmark
+    public int download() throws IOException {
+        int index = ThreadLocalRandom.current().nextInt(userCount);
+        DiscardingResponse response = new DiscardingResponse();
+        imageService.downloadImage(imageIds.get(index), emails.get(index), new MockHttpServletRequest(), response);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public void list(Blackhole blackhole) {
+        blackhole.consume(list(randomEmail()));
+    }
+
+    private ImagePage list(String email) {
+        return imageService.getFilteredImages(email, null, null, null, null, null,
+                "uploadDate", "DESC", null, 50);
+    }
+
+    private String randomEmail() {
+        return emails.get(ThreadLocalRandom.current().nextInt(userCount));
+    }
+
+    /**
+     * Загружаемый файл: сигнатура PNG, уникальный 8-байтовый номер и общее содержимое.
+     * Не копирует содержимое, чтобы не искажать замер выделения памяти.
+     */
+    static class PayloadFile implements MultipartFile {
+
+        private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+        private final long sequence;
+
+        private final byte[] payload;
+
+        PayloadFile(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return "upload-" + sequence + ".png";
+        }
+
+        @Override
+        public String getContentType() {
+            return "image/png";
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public long getSize() {
+            return PNG_SIGNATURE.length + Long.BYTES + payload.length;
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return getInputStream().readAllBytes();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            byte[] prefix = ByteBuffer.allocate(PNG_SIGNATURE.length + Long.BYTES)
+                    .put(PNG_SIGNATURE)
+                    .putLong(sequence)
+                    .array();
+            return new SequenceInputStream(new ByteArrayInputStream(prefix), new ByteArrayInputStream(payload));
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            transferTo(dest.toPath());
+        }
+
+        @Override
+        public void transferTo(Path dest) throws IOException {
+            try (InputStream is = getInputStream()) {
+                Files.copy(is, dest);
+            }
+        }
+    }
+
+    /**
+     * Ответ, который отбрасывает тело, чтобы замер не включал буферизацию в памяти.
+     */
+    static class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.core.benchmark;
+
+import com.example.core.dto.UserDto;
+import com.example.core.model.Roles;
+import com.example.core.service.ImageService;
+import com.example.core.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный бенчмарк: время ответа на короткий запрос (список изображений),
+ * пока {@link #slowClients} клиентов медленно скачивают большое изображение.
+ * В блокирующем режиме каждый медленный клиент удерживает поток Tomcat, и при нехватке
+ * потоков короткие запросы ждут в очереди; в неблокирующем режиме
+ * ({@code image.download.non-blocking=true}) потоки освобождаются сразу после начала передачи.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SlowClientBenchmark {
+
+    private static final String EMAIL = "slow-client@example.com";
+
+    private static final String PASSWORD = "password";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Размер изображения заведомо больше буферов сокета, чтобы передача не завершалась сразу.
+     */
+    private static final int IMAGE_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Потоки Tomcat.
+     */
+    private static final int SERVER_THREADS = 32;
+
+    /**
+     * Неблокирующая передача файлов.
+     */
+    @Param({"false", "true"})
+    private boolean nonBlocking;
+
+    /**
+     * Количество одновременных медленных скачиваний.
+     */
+    @Param({"0", "256"})
+    private int slowClients;
+
+    private BenchmarkContext context;
+
+    private HttpClient client;
+
+    private URI listUri;
+
+    private final List<Socket> sockets = new ArrayList<>();
+
+    private ScheduledExecutorService reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.startServer(
+                "--image.download.non-blocking=" + nonBlocking,
+                "--server.tomcat.threads.max=" + SERVER_THREADS,
+                "--server.tomcat.threads.min-spare=" + SERVER_THREADS);
+
+        UserDto dto = new UserDto();
+        dto.setEmail(EMAIL);
+        dto.setPassword(PASSWORD);
+        dto.setRole(Roles.USER);
+        context.getBean(UserService.class).registerUser(dto);
+        byte[] payload = new byte[IMAGE_SIZE];
+        ThreadLocalRandom.current().nextBytes(payload);
+        ImageService imageService = context.getBean(ImageService.class);
+        imageService.uploadImages(new ImageServiceBenchmark.PayloadFile(1, payload), EMAIL);
+        Integer imageId = imageService.getFilteredImages(EMAIL, null, null, null, null, null,
+                "uploadDate", "DESC", null, 1).getItems().get(0).getId();
+
+        String base = "http://localhost:" + context.getPort();
+        String email = URLEncoder.encode(EMAIL, StandardCharsets.UTF_8);
+        CookieManager cookies = new CookieManager();
+        client = HttpClient.newBuilder()
+                .cookieHandler(cookies)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        client.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=" + email + "&password=" + PASSWORD))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        String session = cookies.getCookieStore().getCookies().stream()
+                .filter(cookie -> cookie.getName().equals("JSESSIONID"))
+                .map(HttpCookie::getValue)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Вход не выполнен"));
+        listUri = URI.create(base + "/image/list?userEmail=" + email + "&size=20");
+
+        byte[] request = ("GET /image/" + imageId + "/download?userEmail=" + email + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Cookie: JSESSIONID=" + session + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < slowClients; i++) {
+            Socket socket = new Socket();
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", context.getPort()));
+            OutputStream out = socket.getOutputStream();
+            out.write(request);
+            out.flush();
+            sockets.add(socket);
+        }
+        // Медленные клиенты читают по 1 КБ раз в 100 мс, не давая передаче завершиться или оборваться
+        reader = Executors.newSingleThreadScheduledExecutor();
+        byte[] buffer = new byte[1024];
+        reader.scheduleWithFixedDelay(() -> {
+            for (Socket socket : sockets) {
+                try {
+                    InputStream in = socket.getInputStream();
+                    int available = in.available();
+                    if (available > 0) {
+                        in.read(buffer, 0, Math.min(available, buffer.length));
+                    }
+                } catch (IOException e) {
+                    // Соединение закрыто сервером
+                }
+            }
+        }, 100, 100, TimeUnit.MILLISECONDS);
+        TimeUnit.SECONDS.sleep(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        reader.shutdownNow();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        // Даём серверу обнаружить закрытые соединения до остановки
+        TimeUnit.SECONDS.sleep(1);
+        context.close();
+    }
+
+    /**
+     * @return Статус ответа; 0, если сервер не ответил за {@link #REQUEST_TIMEOUT}.
+     */
+    @Benchmark
+    public int list() throws IOException, InterruptedException {
+        try {
+            return client.send(HttpRequest.newBuilder(listUri)
+                    .timeout(REQUEST_TIMEOUT)
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (HttpTimeoutException e) {
+            // Все потоки сервера заняты: время ожидания тоже входит в замер
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.core.benchmark;
+
+import com.example.core.dto.UserDto;
+import com.example.core.model.Roles;
+import com.example.core.model.Users;
+import com.example.core.repository.UsersRepository;
+import com.example.core.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Бенчмарк регистрации пользователя ({@link UserService#registerUser}).
+ * Включает проверку уникальности email, хеширование пароля и постановку приветственного уведомления.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    /**
+     * Количество пользователей, зарегистрированных до начала замера.
+     */
+    @Param({"1", "10000"})
+    private int userCount;
+
+    private BenchmarkContext context;
+
+    private UserService userService;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        userService = context.getBean(UserService.class);
+
+        // Существующие пользователи создаются напрямую с одним общим хешем пароля,
+        // чтобы подготовка не тратила время на хеширование
+        String password = context.getBean(PasswordEncoder.class).encode("password");
+        List<Users> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            Users user = new Users();
+            user.setEmail("existing-" + i + "@example.com");
+            user.setPassword(password);
+            user.setRole(Roles.USER);
+            users.add(user);
+        }
+        context.getBean(UsersRepository.class).saveAll(users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+    }
+
+    @Benchmark
+    public void register() {
+        UserDto dto = new UserDto();
+        dto.setEmail("user-" + sequence.incrementAndGet() + "@example.com");
+        dto.setPassword("password");
+        dto.setRole(Roles.USER);
+        userService.registerUser(dto);
+    }
+}
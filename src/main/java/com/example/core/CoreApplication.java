@@ -4,14 +4,16 @@ import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Info;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Основной класс приложения, который запускает Spring Boot приложение.
  *
  * Этот класс также настраивает OpenAPI для автоматической генерации
- * документации API.
+ * документации API и включает выполнение фоновых задач по расписанию.
  */
 @OpenAPIDefinition
+@EnableScheduling
 @SpringBootApplication
 public class CoreApplication {
 
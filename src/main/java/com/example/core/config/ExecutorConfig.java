@@ -0,0 +1,78 @@
+package com.example.core.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Конфигурация пулов потоков для фоновой обработки изображений.
+ * Все пулы ограничены по числу потоков и длине очереди.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Пул для параллельной записи файлов пакетной загрузки в хранилище.
+     * При переполнении очереди задача выполняется в потоке запроса,
+     * что естественно ограничивает скорость поступления новых задач.
+     *
+     * @param threads       Количество потоков.
+     * @param queueCapacity Длина очереди задач.
+     * @return Пул потоков.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageIngestExecutor(@Value("${image.ingest.threads:4}") int threads,
+                                                      @Value("${image.ingest.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-ingest-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Пул для построения уменьшенных копий изображений после загрузки.
+     * При переполнении очереди задача отклоняется: недостающая копия
+     * будет построена при первом запросе.
+     *
+     * @param threads       Количество потоков.
+     * @param queueCapacity Длина очереди задач.
+     * @return Пул потоков.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageRenditionExecutor(@Value("${image.rendition.threads:2}") int threads,
+                                                         @Value("${image.rendition.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-rendition-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Пул для освобождения места в хранилище после массового удаления изображений.
+     * При переполнении очереди задача выполняется в потоке, зафиксировавшем удаление.
+     *
+     * @param threads       Количество потоков.
+     * @param queueCapacity Длина очереди задач.
+     * @return Пул потоков.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor blobReclaimExecutor(@Value("${storage.reclaim.threads:1}") int threads,
+                                                      @Value("${storage.reclaim.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("blob-reclaim-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
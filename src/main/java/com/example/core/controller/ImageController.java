@@ -1,15 +1,20 @@
 package com.example.core.controller;
 
-import com.example.core.model.Image;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.ImageUploadResult;
 import com.example.core.repository.ImageRepository;
 import com.example.core.service.ImageService;
+import com.example.core.service.QuotaExceededException;
+import com.example.core.service.UserBlockedException;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.*;
@@ -41,10 +46,28 @@ public class ImageController {
     public ResponseEntity<String> uploadImages(
             @RequestParam MultipartFile file,
             @RequestParam String email) throws Exception {
-        service.uploadImages(file, email);
+        ImageUploadResult result = service.uploadImages(file, email);
+        if (result.getDuplicateOf() != null) {
+            return ResponseEntity.ok(String.format("Изображение уже загружено (ID %d)", result.getDuplicateOf()));
+        }
         return ResponseEntity.ok("Изображение добавлено");
     }
 
+    /**
+     * Пакетная загрузка нескольких изображений одним запросом.
+     *
+     * @param files Файлы изображений, которые нужно загрузить.
+     * @param email Адрес электронной почты пользователя, загружающего изображения.
+     * @return ResponseEntity с результатом загрузки каждого файла.
+     */
+    @PostMapping(value = "/upload/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Upload several images at once")
+    public ResponseEntity<List<ImageUploadResult>> uploadImagesBatch(
+            @RequestParam List<MultipartFile> files,
+            @RequestParam String email) {
+        return ResponseEntity.ok(service.uploadImagesBatch(files, email));
+    }
+
     /**
      * Получение списка изображений для конкретного пользователя
      * с возможностью фильтрации по различным параметрам.
@@ -56,14 +79,16 @@ public class ImageController {
      * @param maxSize   Максимальный размер изображений для включения (необязательно).
      * @param startDate Начальная дата для фильтрации изображений (необязательно).
      * @param endDate   Конечная дата для фильтрации изображений (необязательно).
-     * @param sortBy    Поле, по которому нужно сортировать результаты
-     *                  (по умолчанию "uploadDate").
+     * @param sortBy    Поле, по которому нужно сортировать результаты:
+     *                  "uploadDate" или "fileSize" (по умолчанию "uploadDate").
      * @param sortOrder Порядок сортировки результатов
      *                  (по умолчанию "ASC").
-     * @return ResponseEntity, содержащий список отфильтрованных изображений.
+     * @param cursor    Курсор следующей страницы из предыдущего ответа (необязательно).
+     * @param size      Размер страницы (необязательно).
+     * @return ResponseEntity, содержащий страницу отфильтрованных изображений.
      */
     @GetMapping("/list")
-    public ResponseEntity<List<Image>> getImages(
+    public ResponseEntity<ImagePage> getImages(
             @RequestParam String userEmail,
             @RequestParam(required = false) List<Integer> ids, // Можно передать список ID
             @RequestParam(required = false) Long minSize,      // Минимальный размер
@@ -71,24 +96,105 @@ public class ImageController {
             @RequestParam(required = false) Date startDate,    // Начальная дата
             @RequestParam(required = false) Date endDate,      // Конечная дата
             @RequestParam(required = false, defaultValue = "uploadDate") String sortBy, // Поле для сортировки
-            @RequestParam(required = false, defaultValue = "ASC") String sortOrder) { // Порядок сортировки
+            @RequestParam(required = false, defaultValue = "ASC") String sortOrder, // Порядок сортировки
+            @RequestParam(required = false) String cursor,     // Курсор следующей страницы
+            @RequestParam(required = false) Integer size) {    // Размер страницы
 
-        List<Image> filteredImages = service.getFilteredImages(userEmail, ids, minSize, maxSize, startDate, endDate, sortBy, sortOrder);
-        return ResponseEntity.ok(filteredImages); // Возвращаем список изображений в ответе
+        ImagePage filteredImages = service.getFilteredImages(userEmail, ids, minSize, maxSize, startDate, endDate, sortBy, sortOrder, cursor, size);
+        return ResponseEntity.ok(filteredImages); // Возвращаем страницу изображений в ответе
     }
 
     /**
      * Скачать изображение по его ID и электронной почте пользователя.
+     * Поддерживаются заголовки Range, If-Range и If-None-Match.
+     * Если тип оригинала не указан в Accept или заданы width или quality,
+     * изображение отдаётся перекодированным в JPEG или PNG.
      *
      * @param imageId   ID изображения для скачивания.
      * @param userEmail Адрес электронной почты пользователя, запрашивающего скачивание.
+     * @param width     Желаемая ширина в пикселях (необязательно; изображение не увеличивается).
+     * @param quality   Качество JPEG от 1 до 100 (необязательно).
+     * @param request   HttpServletRequest с заголовками запроса.
      * @param response  HttpServletResponse для записи данных изображения.
      * @throws IOException Если возникает ошибка во время скачивания.
      */
     @GetMapping("/{imageId}/download")
     public void downloadImage(@PathVariable Integer imageId,
                               @RequestParam String userEmail,
+                              @RequestParam(required = false) Integer width,
+                              @RequestParam(required = false) Integer quality,
+                              HttpServletRequest request,
                               HttpServletResponse response) throws IOException {
-        service.downloadImage(imageId, userEmail, response);
+        service.downloadImage(imageId, width, quality, userEmail, request, response);
+    }
+
+    /**
+     * Удалить изображение пользователя.
+     *
+     * @param imageId   ID изображения.
+     * @param userEmail Адрес электронной почты владельца изображения.
+     * @return ResponseEntity с сообщением о результате удаления.
+     */
+    @DeleteMapping("/{imageId}")
+    public ResponseEntity<String> deleteImage(@PathVariable Integer imageId,
+                                              @RequestParam String userEmail) {
+        if (!service.deleteImage(imageId, userEmail)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Ошибка: изображение принадлежит другому пользователю");
+        }
+        return ResponseEntity.ok("Изображение удалено");
+    }
+
+    /**
+     * Получить уменьшенную копию изображения для сетки или предпросмотра.
+     * Ответ кэшируется клиентом; поддерживается заголовок If-None-Match.
+     *
+     * @param imageId   ID изображения.
+     * @param size      Размер копии: "thumb" (до 160 пикселей) или "preview" (до 800 пикселей).
+     * @param userEmail Адрес электронной почты пользователя, запрашивающего копию.
+     * @param request   HttpServletRequest с заголовками запроса.
+     * @param response  HttpServletResponse для записи копии.
+     * @throws IOException Если возникает ошибка во время передачи.
+     */
+    @GetMapping("/{imageId}/rendition/{size}")
+    public void downloadRendition(@PathVariable Integer imageId,
+                                  @PathVariable String size,
+                                  @RequestParam String userEmail,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        service.downloadRendition(imageId, size, userEmail, request, response);
+    }
+
+    /**
+     * Обработка ошибок некорректных параметров запроса
+     * (неподдерживаемый формат, поле сортировки, курсор, размер копии, ширина или качество).
+     *
+     * @param e Исключение с описанием ошибки.
+     * @return ResponseEntity со статусом 400 и описанием ошибки.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ошибка: " + e.getMessage());
+    }
+
+    /**
+     * Обработка превышения квоты хранилища.
+     *
+     * @param e Исключение с описанием ошибки.
+     * @return ResponseEntity со статусом 507 и описанием ошибки.
+     */
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<String> handleQuotaExceeded(QuotaExceededException e) {
+        return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body("Ошибка: " + e.getMessage());
+    }
+
+    /**
+     * Обработка обращения заблокированного пользователя.
+     *
+     * @param e Исключение с описанием ошибки.
+     * @return ResponseEntity со статусом 403 и описанием ошибки.
+     */
+    @ExceptionHandler(UserBlockedException.class)
+    public ResponseEntity<String> handleUserBlocked(UserBlockedException e) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Ошибка: " + e.getMessage());
     }
 }
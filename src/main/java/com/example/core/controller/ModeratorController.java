@@ -1,7 +1,12 @@
 package com.example.core.controller;
 
-import com.example.core.model.Image;
+import com.example.core.dto.BulkModerationResult;
+import com.example.core.dto.DuplicateCluster;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.StorageUsage;
+import com.example.core.service.UserIdentityCache;
 import com.example.core.service.UserService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,7 +14,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для управления пользователями модераторами.
@@ -23,6 +30,9 @@ public class ModeratorController {
     @Autowired
     private UserService service;
 
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
     /**
      * Блокировка пользователя по его ID.
      * Доступно только пользователям с ролью 'MODERATOR'.
@@ -59,6 +69,64 @@ public class ModeratorController {
         }
     }
 
+    /**
+     * Массовая блокировка пользователей.
+     * Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param ids          Список ID пользователей в теле запроса.
+     * @param deleteImages Удалить также все изображения блокируемых пользователей (по умолчанию false).
+     * @return ResponseEntity с количеством заблокированных пользователей и удалённых изображений.
+     */
+    @PostMapping("/block")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<BulkModerationResult> blockUsers(@RequestBody List<Integer> ids,
+                                                           @RequestParam(defaultValue = "false") boolean deleteImages) {
+        return ResponseEntity.ok(service.blockUsers(ids, deleteImages));
+    }
+
+    /**
+     * Массовая разблокировка пользователей.
+     * Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param ids Список ID пользователей в теле запроса.
+     * @return ResponseEntity с количеством разблокированных пользователей.
+     */
+    @PostMapping("/unblock")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<BulkModerationResult> unblockUsers(@RequestBody List<Integer> ids) {
+        return ResponseEntity.ok(service.unblockUsers(ids));
+    }
+
+    /**
+     * Удаление всех изображений заблокированных пользователей.
+     * Место в хранилище освобождается в фоне. Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param ids Список ID пользователей в теле запроса; незаблокированные пользователи пропускаются.
+     * @return ResponseEntity с количеством удалённых изображений и их общим размером.
+     */
+    @PostMapping("/images/delete")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<BulkModerationResult> deleteImagesOfBlockedUsers(@RequestBody List<Integer> ids) {
+        return ResponseEntity.ok(service.deleteImagesOfBlockedUsers(ids));
+    }
+
+    /**
+     * Группы похожих изображений: повторные загрузки одного и того же изображения,
+     * в том числе пересжатые и уменьшенные копии. Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param userId      ID пользователя, среди изображений которого ищутся похожие (необязательно).
+     * @param maxDistance Наибольшее расстояние Хэмминга между перцептивными хешами, от 0 до 16 (необязательно).
+     * @param limit       Наибольшее количество групп (необязательно).
+     * @return ResponseEntity с группами похожих изображений, начиная с самых больших.
+     */
+    @GetMapping("/images/duplicates")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<List<DuplicateCluster>> getDuplicates(@RequestParam(required = false) Integer userId,
+                                                                @RequestParam(required = false) Integer maxDistance,
+                                                                @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(service.findDuplicates(userId, maxDistance, limit));
+    }
+
     /**
      * Получение отфильтрованных изображений для модерации.
      * Доступно только пользователям с ролью 'MODERATOR'.
@@ -68,22 +136,88 @@ public class ModeratorController {
      * @param maxSize   Максимальный размер изображений для фильтрации (необязательно).
      * @param startDate Начальная дата для фильтрации изображений (необязательно).
      * @param endDate   Конечная дата для фильтрации изображений (необязательно).
-     * @param sortBy    Поле, по которому требуется сортировать результаты (по умолчанию "uploadDate").
+     * @param sortBy    Поле, по которому требуется сортировать результаты:
+     *                  "uploadDate" или "fileSize" (по умолчанию "uploadDate").
      * @param sortOrder Порядок сортировки результатов (по умолчанию "ASC").
-     * @return ResponseEntity, содержащий список отфильтрованных изображений.
+     * @param cursor    Курсор следующей страницы из предыдущего ответа (необязательно).
+     * @param size      Размер страницы (необязательно).
+     * @return ResponseEntity, содержащий страницу отфильтрованных изображений.
      */
     @GetMapping("/list")
     @PreAuthorize("hasRole('MODERATOR')")
-    public ResponseEntity<List<Image>> getFilteredImages(
+    public ResponseEntity<ImagePage> getFilteredImages(
             @RequestParam(required = false) List<Integer> ids,
             @RequestParam(required = false) Long minSize,
             @RequestParam(required = false) Long maxSize,
             @RequestParam(required = false) Date startDate,
             @RequestParam(required = false) Date endDate,
             @RequestParam(required = false, defaultValue = "uploadDate") String sortBy,
-            @RequestParam(required = false, defaultValue = "ASC") String sortOrder) {
+            @RequestParam(required = false, defaultValue = "ASC") String sortOrder,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
 
-        List<Image> images = service.getModeratedImages(ids, minSize, maxSize, startDate, endDate, sortBy, sortOrder);
+        ImagePage images = service.getModeratedImages(ids, minSize, maxSize, startDate, endDate, sortBy, sortOrder, cursor, size);
         return ResponseEntity.ok(images);
     }
+
+    /**
+     * Занятое пользователем место и действующие квоты.
+     * Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param id ID пользователя.
+     * @return ResponseEntity с объёмом и количеством изображений пользователя и его квотами.
+     */
+    @GetMapping("/{id}/usage")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<StorageUsage> getStorageUsage(@PathVariable Integer id) {
+        return ResponseEntity.ok(service.getStorageUsage(id));
+    }
+
+    /**
+     * Установка индивидуальной квоты пользователя.
+     * Не заданный параметр возвращает квоту роли.
+     * Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @param id        ID пользователя.
+     * @param maxBytes  Квота на объём в байтах (необязательно).
+     * @param maxImages Квота на количество изображений (необязательно).
+     * @return ResponseEntity с занятым местом и обновлёнными квотами.
+     */
+    @PutMapping("/{id}/quota")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<StorageUsage> setStorageQuota(@PathVariable Integer id,
+                                                        @RequestParam(required = false) Long maxBytes,
+                                                        @RequestParam(required = false) Integer maxImages) {
+        return ResponseEntity.ok(service.setStorageQuota(id, maxBytes, maxImages));
+    }
+
+    /**
+     * Статистика кэша сведений о пользователях.
+     * Доступно только пользователям с ролью 'MODERATOR'.
+     *
+     * @return ResponseEntity с количеством попаданий, промахов и вытеснений кэша.
+     */
+    @GetMapping("/stats/user-cache")
+    @PreAuthorize("hasRole('MODERATOR')")
+    public ResponseEntity<Map<String, Object>> getUserCacheStats() {
+        CacheStats stats = userIdentityCache.stats();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("size", userIdentityCache.size());
+        body.put("hitCount", stats.hitCount());
+        body.put("missCount", stats.missCount());
+        body.put("hitRate", stats.hitRate());
+        body.put("evictionCount", stats.evictionCount());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Обработка ошибок некорректных параметров запроса (поле сортировки, курсор или список ID).
+     *
+     * @param e Исключение с описанием ошибки.
+     * @return ResponseEntity со статусом 400 и описанием ошибки.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ошибка: " + e.getMessage());
+    }
 }
@@ -1,15 +1,23 @@
 package com.example.core.controller;
 
+import com.example.core.dto.ApiTokenResponse;
 import com.example.core.dto.UserDto;
+import com.example.core.service.ApiTokenService;
+import com.example.core.service.UserIdentityCache;
 import com.example.core.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
 /**
  * Контроллер для управления пользователями.
- * Предоставляет методы для регистрации пользователей и тестового сообщения.
+ * Предоставляет методы для регистрации пользователей, выпуска API-токенов и тестового сообщения.
  */
 @RestController
 @RequestMapping("/user")
@@ -18,6 +26,15 @@ public class UserController {
     @Autowired
     private UserService service;
 
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private ApiTokenService apiTokenService;
+
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
     /**
      * Тестовое сообщение, чтобы проверить, что контроллер работает.
      *
@@ -45,4 +62,39 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Ошибка: " + e.getMessage());
         }
     }
+
+    /**
+     * Выпуск API-токена. Пароль проверяется один раз; последующие запросы с заголовком
+     * {@code Authorization: Bearer <token>} не проверяют пароль и не создают сессию.
+     *
+     * @param userDto Адрес электронной почты и пароль пользователя.
+     * @return ResponseEntity с токеном и сроком его действия, или 401 при неверных данных.
+     */
+    @PostMapping("/token")
+    public ResponseEntity<?> issueToken(@RequestBody UserDto userDto) {
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(userDto.getEmail(), userDto.getPassword()));
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Ошибка: " + e.getMessage());
+        }
+        ApiTokenResponse token = apiTokenService.issue(userIdentityCache.get(authentication.getName()));
+        return ResponseEntity.ok(token);
+    }
+
+    /**
+     * Отзыв API-токена, переданного в заголовке Authorization.
+     *
+     * @param authorization Значение заголовка {@code Authorization: Bearer <token>}.
+     * @return ResponseEntity с сообщением о результате.
+     */
+    @DeleteMapping("/token")
+    public ResponseEntity<?> revokeToken(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        String token = authorization.substring(authorization.indexOf(' ') + 1).trim();
+        if (!apiTokenService.revoke(token)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Токен не найден");
+        }
+        return ResponseEntity.ok("Токен отозван");
+    }
 }
@@ -0,0 +1,25 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * DTO (Data Transfer Object) с выпущенным API-токеном.
+ * Токен показывается один раз: на сервере хранится только его хеш.
+ */
+@Getter
+@AllArgsConstructor
+public class ApiTokenResponse {
+
+    /**
+     * Токен для заголовка {@code Authorization: Bearer <token>}.
+     */
+    private String token;
+
+    /**
+     * Дата и время, после которых токен недействителен.
+     */
+    private Date expiresAt;
+}
@@ -0,0 +1,27 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * DTO (Data Transfer Object) с результатом массового действия модератора.
+ */
+@Getter
+@AllArgsConstructor
+public class BulkModerationResult {
+
+    /**
+     * Количество пользователей, к которым применено действие.
+     */
+    private int users;
+
+    /**
+     * Количество удалённых изображений.
+     */
+    private int imagesDeleted;
+
+    /**
+     * Общий размер удалённых изображений в байтах.
+     */
+    private long bytesDeleted;
+}
@@ -0,0 +1,25 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * DTO (Data Transfer Object) с группой похожих изображений: каждое изображение группы
+ * находится в пределах заданного расстояния Хэмминга хотя бы от одного другого.
+ */
+@Getter
+@AllArgsConstructor
+public class DuplicateCluster {
+
+    /**
+     * ID пользователей, которым принадлежат изображения группы.
+     */
+    private List<Integer> userIds;
+
+    /**
+     * ID изображений группы по возрастанию.
+     */
+    private List<Integer> imageIds;
+}
@@ -0,0 +1,29 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Скачивания изображения, накопленные в памяти с последней записи в базу данных.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageAccessCount {
+
+    /**
+     * ID изображения.
+     */
+    private final Integer imageId;
+
+    /**
+     * Количество скачиваний.
+     */
+    private final long downloads;
+
+    /**
+     * Дата и время последнего скачивания.
+     */
+    private final Date lastAccessed;
+}
@@ -0,0 +1,32 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Ссылка изображения на содержимое в хранилище: ID изображения, владельца, ключ и размер содержимого.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageBlobRef {
+
+    /**
+     * ID изображения.
+     */
+    private final Integer imageId;
+
+    /**
+     * ID владельца изображения.
+     */
+    private final Integer userId;
+
+    /**
+     * Ключ содержимого в хранилище.
+     */
+    private final String blobKey;
+
+    /**
+     * Размер изображения в байтах.
+     */
+    private final Long fileSize;
+}
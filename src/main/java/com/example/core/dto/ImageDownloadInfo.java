@@ -0,0 +1,47 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Метаданные изображения, необходимые для скачивания: владелец, содержимое и заголовки ответа.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageDownloadInfo {
+
+    /**
+     * ID изображения.
+     */
+    private final Integer imageId;
+
+    /**
+     * ID владельца изображения.
+     */
+    private final Integer userId;
+
+    /**
+     * Ключ содержимого в хранилище.
+     */
+    private final String blobKey;
+
+    /**
+     * SHA-256 содержимого (ETag).
+     */
+    private final String checksum;
+
+    /**
+     * Тип содержимого.
+     */
+    private final String contentType;
+
+    /**
+     * Оригинальное имя файла.
+     */
+    private final String originalFileName;
+
+    /**
+     * Размер файла в байтах.
+     */
+    private final Long fileSize;
+}
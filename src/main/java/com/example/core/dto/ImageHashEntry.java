@@ -0,0 +1,28 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Перцептивный хеш изображения вместе с ID изображения и владельца.
+ * Используется для заполнения индекса похожих изображений без загрузки сущностей.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageHashEntry {
+
+    /**
+     * ID изображения.
+     */
+    private final Integer imageId;
+
+    /**
+     * ID владельца изображения.
+     */
+    private final Integer userId;
+
+    /**
+     * Перцептивный хеш изображения.
+     */
+    private final long hash;
+}
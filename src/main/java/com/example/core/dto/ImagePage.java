@@ -0,0 +1,25 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * DTO (Data Transfer Object) страницы списка изображений.
+ * Содержит метаданные изображений и курсор для запроса следующей страницы.
+ */
+@Getter
+@AllArgsConstructor
+public class ImagePage {
+
+    /**
+     * Метаданные изображений текущей страницы.
+     */
+    private List<ImageSummary> items;
+
+    /**
+     * Курсор следующей страницы или null, если страница последняя.
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,45 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * DTO (Data Transfer Object) с метаданными изображения для списков.
+ * Выбирается из базы проекцией, без загрузки сущности и связанного пользователя.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageSummary {
+
+    /**
+     * Уникальный идентификатор изображения.
+     */
+    private Integer id;
+
+    /**
+     * Имя изображения.
+     */
+    private String name;
+
+    /**
+     * Оригинальное имя файла, из которого было загружено изображение.
+     */
+    private String originalFileName;
+
+    /**
+     * Размер файла изображения в байтах.
+     */
+    private Long fileSize;
+
+    /**
+     * Тип содержимого изображения.
+     */
+    private String contentType;
+
+    /**
+     * Дата и время загрузки изображения.
+     */
+    private Date uploadDate;
+}
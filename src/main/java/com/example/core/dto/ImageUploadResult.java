@@ -0,0 +1,55 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * DTO (Data Transfer Object) с результатом загрузки одного файла.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageUploadResult {
+
+    /**
+     * Оригинальное имя загружаемого файла.
+     */
+    private String fileName;
+
+    /**
+     * true, если изображение сохранено.
+     */
+    private boolean uploaded;
+
+    /**
+     * Размер сохранённого изображения в байтах (null, если файл не сохранён).
+     */
+    private Long fileSize;
+
+    /**
+     * SHA-256 содержимого сохранённого изображения (null, если файл не сохранён).
+     */
+    private String checksum;
+
+    /**
+     * Описание ошибки (null, если файл сохранён).
+     */
+    private String error;
+
+    /**
+     * ID уже загруженного пользователем такого же или похожего изображения,
+     * из-за которого файл не сохранён (null, если файл сохранён или отклонён по другой причине).
+     */
+    private Integer duplicateOf;
+
+    public static ImageUploadResult uploaded(String fileName, long fileSize, String checksum) {
+        return new ImageUploadResult(fileName, true, fileSize, checksum, null, null);
+    }
+
+    public static ImageUploadResult failed(String fileName, String error) {
+        return new ImageUploadResult(fileName, false, null, null, error, null);
+    }
+
+    public static ImageUploadResult duplicate(String fileName, Integer duplicateOf) {
+        return new ImageUploadResult(fileName, false, null, null, null, duplicateOf);
+    }
+}
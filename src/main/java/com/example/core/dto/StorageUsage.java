@@ -0,0 +1,37 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * DTO (Data Transfer Object) с занятым пользователем местом и действующими квотами.
+ */
+@Getter
+@AllArgsConstructor
+public class StorageUsage {
+
+    /**
+     * ID пользователя.
+     */
+    private Integer userId;
+
+    /**
+     * Общий размер изображений пользователя в байтах.
+     */
+    private long bytesUsed;
+
+    /**
+     * Количество изображений пользователя.
+     */
+    private int imageCount;
+
+    /**
+     * Действующая квота на объём в байтах.
+     */
+    private long maxBytes;
+
+    /**
+     * Действующая квота на количество изображений.
+     */
+    private int maxImages;
+}
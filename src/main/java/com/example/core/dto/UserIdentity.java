@@ -0,0 +1,34 @@
+package com.example.core.dto;
+
+import com.example.core.model.Roles;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Неизменяемые сведения о пользователе, необходимые на частых запросах:
+ * идентификатор, роль и признак блокировки. Пароль не содержит.
+ */
+@Getter
+@AllArgsConstructor
+public class UserIdentity {
+
+    /**
+     * Уникальный идентификатор пользователя.
+     */
+    private final Integer id;
+
+    /**
+     * Электронная почта пользователя.
+     */
+    private final String email;
+
+    /**
+     * Роль пользователя.
+     */
+    private final Roles role;
+
+    /**
+     * Флаг, указывающий, заблокирован ли пользователь.
+     */
+    private final boolean blocked;
+}
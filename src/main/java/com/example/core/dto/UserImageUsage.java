@@ -0,0 +1,27 @@
+package com.example.core.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Общий размер и количество изображений одного пользователя.
+ */
+@Getter
+@AllArgsConstructor
+public class UserImageUsage {
+
+    /**
+     * ID пользователя.
+     */
+    private final Integer userId;
+
+    /**
+     * Общий размер изображений в байтах.
+     */
+    private final long bytes;
+
+    /**
+     * Количество изображений.
+     */
+    private final long count;
+}
@@ -0,0 +1,58 @@
+package com.example.core.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Модель API-токена пользователя.
+ * Хранится только SHA-256 токена: по утечке таблицы нельзя восстановить сами токены.
+ * Проверка токена не требует bcrypt, поэтому API-запросы с токеном не тратят процессор на хеширование пароля.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "api_tokens", indexes = {
+        @Index(name = "idx_api_tokens_token_hash", columnList = "token_hash", unique = true)
+})
+public class ApiToken {
+
+    /**
+     * Уникальный идентификатор токена.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    /**
+     * SHA-256 токена в шестнадцатеричном виде.
+     */
+    @Column(name = "token_hash", length = 64, nullable = false)
+    private String tokenHash;
+
+    /**
+     * Дата и время выпуска токена.
+     */
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    /**
+     * Дата и время, после которых токен недействителен.
+     */
+    @Column(name = "expires_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date expiresAt;
+
+    /**
+     * Владелец токена.
+     */
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private Users user;
+}
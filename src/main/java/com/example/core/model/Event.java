@@ -6,6 +6,7 @@ import lombok.*;
 /**
  * Класс, представляющий событие.
  * Содержит информацию о событии, включая адрес электронной почты и описание.
+ * Сводка по загрузкам и скачиваниям дополнительно содержит их количество и объём.
  */
 @Getter
 @Setter
@@ -23,4 +24,29 @@ public class Event {
      * Описание события.
      */
     private String description;
+
+    /**
+     * Количество загруженных изображений (только для сводки).
+     */
+    private Integer uploadCount;
+
+    /**
+     * Общий размер загруженных изображений в байтах (только для сводки).
+     */
+    private Long uploadBytes;
+
+    /**
+     * Количество скачанных изображений (только для сводки).
+     */
+    private Integer downloadCount;
+
+    /**
+     * Общий размер скачанных изображений в байтах (только для сводки).
+     */
+    private Long downloadBytes;
+
+    public Event(String email, String description) {
+        this.email = email;
+        this.description = description;
+    }
 }
@@ -9,7 +9,7 @@ import java.util.Date;
 /**
  * Модель изображения, представляющая собой сущность в базе данных.
  * Содержит информацию об изображении, такой как имя, размер, тип содержимого,
- * дата загрузки и данные самого изображения.
+ * дата загрузки и ключ содержимого в хранилище.
  */
 @Entity
 @Getter
@@ -17,7 +17,16 @@ import java.util.Date;
 @ToString
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "images")
+@Table(name = "images", indexes = {
+        // Индексы под постраничную выборку по ключам (upload_date, id) и (file_size, id)
+        @Index(name = "idx_images_upload_date_id", columnList = "upload_date, id"),
+        @Index(name = "idx_images_file_size_id", columnList = "file_size, id"),
+        // Индексы под выборку изображений пользователя с фильтрами и сортировкой по дате или размеру
+        @Index(name = "idx_images_user_upload_date", columnList = "user_id, upload_date, id"),
+        @Index(name = "idx_images_user_file_size", columnList = "user_id, file_size, id"),
+        // Индекс под проверку ссылок на содержимое и выбор давно не скачиваемого содержимого
+        @Index(name = "idx_images_blob_key", columnList = "blob_key")
+})
 public class Image {
 
     /**
@@ -59,18 +68,45 @@ public class Image {
     private Date uploadDate;
 
     /**
-     * Данные изображения в виде массива байтов.
+     * SHA-256 содержимого изображения в шестнадцатеричном виде.
      */
-    @Lob
-    @Column(name = "bytes")
-    private byte[] bytes;
+    @Column(name = "checksum", length = 64)
+    private String checksum;
+
+    /**
+     * Перцептивный хеш (dHash) изображения для поиска похожих изображений;
+     * null, если формат не удалось декодировать.
+     */
+    @Column(name = "perceptual_hash")
+    private Long perceptualHash;
+
+    /**
+     * Ключ содержимого изображения в хранилище {@link com.example.core.storage.BlobStore}.
+     */
+    @Column(name = "blob_key", length = 64)
+    private String blobKey;
+
+    /**
+     * Количество скачиваний изображения; null, если изображение не скачивали.
+     * Счётчики копятся в памяти и записываются пачками, поэтому значение может отставать.
+     */
+    @Column(name = "download_count")
+    private Long downloadCount;
+
+    /**
+     * Дата и время последнего скачивания изображения; null, если изображение не скачивали.
+     */
+    @Column(name = "last_accessed")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastAccessed;
 
     /**
      * Пользователь, который загрузил изображение.
      * Это поле игнорируется при сериализации в JSON.
      */
     @JsonIgnore
-    @ManyToOne // Указываем отношение многим к одному
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY) // Указываем отношение многим к одному
     @JoinColumn(name = "user_id", nullable = false) // Внешний ключ для пользователя
     private Users user;
 }
@@ -0,0 +1,149 @@
+package com.example.core.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Перечисление поддерживаемых форматов изображений.
+ * Формат определяется по сигнатуре в первых байтах содержимого, а не по
+ * заявленному клиентом Content-Type.
+ */
+public enum ImageFormat {
+    /**
+     * JPEG: FF D8 FF.
+     */
+    JPEG("image/jpeg", signature(0, 0xFF, 0xD8, 0xFF)),
+
+    /**
+     * PNG: 89 50 4E 47 0D 0A 1A 0A.
+     */
+    PNG("image/png", signature(0, 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A)),
+
+    /**
+     * GIF: "GIF87a" или "GIF89a".
+     */
+    GIF("image/gif", ascii(0, "GIF87a"), ascii(0, "GIF89a")),
+
+    /**
+     * WebP: "RIFF", четыре байта длины, "WEBP".
+     */
+    WEBP("image/webp", concat(ascii(0, "RIFF"), ascii(8, "WEBP")));
+
+    /**
+     * Количество первых байт содержимого, достаточное для определения любого формата.
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    /**
+     * Таблица кандидатов по первому байту содержимого. Для каждого байта хранится
+     * список пар (формат, сигнатура), начинающихся с этого байта, поэтому
+     * определение формата проверяет не больше двух сигнатур.
+     */
+    private static final Candidate[][] BY_FIRST_BYTE = buildTable();
+
+    private final String contentType;
+
+    private final int[][] signatures;
+
+    ImageFormat(String contentType, int[]... signatures) {
+        this.contentType = contentType;
+        this.signatures = signatures;
+    }
+
+    /**
+     * @return MIME-тип формата.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Определяет формат изображения по первым байтам содержимого.
+     *
+     * @param header Первые байты содержимого.
+     * @param length Количество прочитанных байт в header.
+     * @return Формат изображения или пустой Optional, если сигнатура не распознана.
+     */
+    public static Optional<ImageFormat> detect(byte[] header, int length) {
+        if (length <= 0) {
+            return Optional.empty();
+        }
+        Candidate[] candidates = BY_FIRST_BYTE[header[0] & 0xFF];
+        if (candidates == null) {
+            return Optional.empty();
+        }
+        for (Candidate candidate : candidates) {
+            if (matches(candidate.signature(), header, length)) {
+                return Optional.of(candidate.format());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Сигнатура хранится парами (смещение, значение байта).
+     */
+    private static boolean matches(int[] signature, byte[] header, int length) {
+        for (int i = 0; i < signature.length; i += 2) {
+            int offset = signature[i];
+            if (offset >= length || (header[offset] & 0xFF) != signature[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Candidate[][] buildTable() {
+        List<List<Candidate>> table = new ArrayList<>(256);
+        for (int i = 0; i < 256; i++) {
+            table.add(null);
+        }
+        for (ImageFormat format : values()) {
+            for (int[] signature : format.signatures) {
+                // Все сигнатуры начинаются со смещения 0
+                int first = signature[1];
+                if (table.get(first) == null) {
+                    table.set(first, new ArrayList<>());
+                }
+                table.get(first).add(new Candidate(format, signature));
+            }
+        }
+        Candidate[][] result = new Candidate[256][];
+        for (int i = 0; i < 256; i++) {
+            if (table.get(i) != null) {
+                result[i] = table.get(i).toArray(new Candidate[0]);
+            }
+        }
+        return result;
+    }
+
+    private static int[] signature(int offset, int... bytes) {
+        int[] pairs = new int[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            pairs[i * 2] = offset + i;
+            pairs[i * 2 + 1] = bytes[i];
+        }
+        return pairs;
+    }
+
+    private static int[] ascii(int offset, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        int[] values = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            values[i] = bytes[i];
+        }
+        return signature(offset, values);
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = new int[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private record Candidate(ImageFormat format, int[] signature) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.core.model;
+
+/**
+ * Перечисление видов уведомлений для mail-сервиса.
+ */
+public enum NotificationKind {
+    /**
+     * Произвольное сообщение, отправляется как есть.
+     */
+    MESSAGE,
+
+    /**
+     * Загрузка изображений. Объединяется с другими загрузками и скачиваниями пользователя в сводку.
+     */
+    UPLOAD,
+
+    /**
+     * Скачивание изображения. Объединяется с другими загрузками и скачиваниями пользователя в сводку.
+     */
+    DOWNLOAD;
+}
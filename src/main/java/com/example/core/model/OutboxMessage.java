@@ -0,0 +1,81 @@
+package com.example.core.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Модель исходящего уведомления, ожидающего отправки в mail-сервис.
+ * Записывается в той же транзакции, что и изменение, о котором уведомляет,
+ * и отправляется в RabbitMQ фоновым процессом.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "outbox_messages", indexes = {
+        @Index(name = "idx_outbox_next_attempt", columnList = "next_attempt_at, id")
+})
+public class OutboxMessage {
+
+    /**
+     * Уникальный идентификатор уведомления.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Адрес электронной почты получателя.
+     */
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    /**
+     * Вид уведомления.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false)
+    private NotificationKind kind;
+
+    /**
+     * Количество изображений, к которым относится уведомление.
+     */
+    @Column(name = "item_count", nullable = false)
+    private int itemCount;
+
+    /**
+     * Общий размер изображений в байтах.
+     */
+    @Column(name = "bytes", nullable = false)
+    private long bytes;
+
+    /**
+     * Текст уведомления.
+     */
+    @Column(name = "description", length = 1024)
+    private String description;
+
+    /**
+     * Дата и время создания уведомления.
+     */
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    /**
+     * Количество неудачных попыток отправки.
+     */
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    /**
+     * Дата и время, не раньше которых можно выполнить следующую попытку отправки.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttemptAt;
+}
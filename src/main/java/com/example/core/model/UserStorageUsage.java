@@ -0,0 +1,51 @@
+package com.example.core.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Модель учёта занятого пользователем места в хранилище.
+ * Счётчики обновляются атомарно при загрузке и удалении изображений,
+ * поэтому для проверки квоты и отчёта не нужно суммировать таблицу images.
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "user_storage_usage")
+public class UserStorageUsage {
+
+    /**
+     * ID пользователя.
+     */
+    @Id
+    @Column(name = "user_id")
+    private Integer userId;
+
+    /**
+     * Общий размер изображений пользователя в байтах, включая зарезервированные загрузки.
+     */
+    @Column(name = "bytes_used", nullable = false)
+    private long bytesUsed;
+
+    /**
+     * Количество изображений пользователя, включая зарезервированные загрузки.
+     */
+    @Column(name = "image_count", nullable = false)
+    private int imageCount;
+
+    /**
+     * Индивидуальная квота на объём в байтах (null — квота роли).
+     */
+    @Column(name = "max_bytes")
+    private Long maxBytes;
+
+    /**
+     * Индивидуальная квота на количество изображений (null — квота роли).
+     */
+    @Column(name = "max_images")
+    private Integer maxImages;
+}
@@ -0,0 +1,48 @@
+package com.example.core.repository;
+
+import com.example.core.model.ApiToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Репозиторий API-токенов пользователей.
+ */
+@Repository
+public interface ApiTokenRepository extends JpaRepository<ApiToken, Integer> {
+
+    /**
+     * Поиск действующего токена вместе с владельцем одним запросом.
+     *
+     * @param tokenHash SHA-256 токена.
+     * @param now       Текущее время.
+     * @return Optional, содержащий токен, если он найден и не истёк.
+     */
+    @Query("select t from ApiToken t join fetch t.user where t.tokenHash = :tokenHash and t.expiresAt > :now")
+    Optional<ApiToken> findActive(@Param("tokenHash") String tokenHash, @Param("now") Date now);
+
+    /**
+     * Удаление токена.
+     *
+     * @param tokenHash SHA-256 токена.
+     * @return Количество удалённых токенов.
+     */
+    @Modifying
+    @Query("delete from ApiToken t where t.tokenHash = :tokenHash")
+    int deleteByTokenHash(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Удаление истёкших токенов.
+     *
+     * @param now Текущее время.
+     * @return Количество удалённых токенов.
+     */
+    @Modifying
+    @Query("delete from ApiToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Date now);
+}
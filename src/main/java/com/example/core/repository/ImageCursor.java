@@ -0,0 +1,100 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ImageSummary;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор постраничной выборки изображений.
+ * Хранит поле и порядок сортировки, а также значения ключа (поле, ID)
+ * последнего изображения страницы. Клиенту передаётся в виде непрозрачной строки.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageCursor {
+
+    /**
+     * Поле сортировки, для которого выдан курсор.
+     */
+    private final ImageSortField sortField;
+
+    /**
+     * Порядок сортировки, для которого выдан курсор.
+     */
+    private final boolean descending;
+
+    /**
+     * Значение поля сортировки у последнего изображения страницы.
+     */
+    private final long value;
+
+    /**
+     * ID последнего изображения страницы.
+     */
+    private final int id;
+
+    /**
+     * Создаёт курсор, указывающий на позицию сразу после указанного изображения.
+     *
+     * @param last       Последнее изображение страницы.
+     * @param sortField  Поле сортировки.
+     * @param descending Порядок сортировки.
+     * @return Курсор следующей страницы.
+     */
+    public static ImageCursor after(ImageSummary last, ImageSortField sortField, boolean descending) {
+        return new ImageCursor(sortField, descending, sortField.valueOf(last), last.getId());
+    }
+
+    /**
+     * @return Курсор в виде строки для передачи клиенту.
+     */
+    public String encode() {
+        String raw = sortField.name() + ":" + (descending ? "D" : "A") + ":" + value + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Восстанавливает курсор из строки, полученной от клиента, и проверяет,
+     * что он выдан для той же сортировки.
+     *
+     * @param token      Строковое представление курсора (может быть null или пустым).
+     * @param sortField  Текущее поле сортировки.
+     * @param descending Текущий порядок сортировки.
+     * @return Курсор или null, если строка пуста.
+     * @throws IllegalArgumentException Если строка некорректна или курсор выдан для другой сортировки.
+     */
+    public static ImageCursor parse(String token, ImageSortField sortField, boolean descending) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        ImageCursor cursor = decode(token);
+        if (cursor.sortField != sortField || cursor.descending != descending) {
+            throw new IllegalArgumentException("Курсор выдан для другой сортировки");
+        }
+        return cursor;
+    }
+
+    /**
+     * Восстанавливает курсор из строки, полученной от клиента.
+     *
+     * @param token Строковое представление курсора.
+     * @return Курсор.
+     * @throws IllegalArgumentException Если строка не является корректным курсором.
+     */
+    public static ImageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Некорректный курсор: " + token);
+            }
+            return new ImageCursor(ImageSortField.valueOf(parts[0]), "D".equals(parts[1]),
+                    Long.parseLong(parts[2]), Integer.parseInt(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + token, e);
+        }
+    }
+}
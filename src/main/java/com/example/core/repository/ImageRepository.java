@@ -1,87 +1,148 @@
 package com.example.core.repository;
 
+import com.example.core.dto.ImageBlobRef;
+import com.example.core.dto.ImageDownloadInfo;
+import com.example.core.dto.ImageHashEntry;
+import com.example.core.dto.UserImageUsage;
 import com.example.core.model.Image;
-import com.example.core.model.Users;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Репозиторий для работы с изображениями.
  * Предоставляет методы для поиска изображений в базе данных.
+ * Списки изображений выбираются постранично через {@link ImageRepositoryCustom#findPage}.
  */
 @Repository
-public interface ImageRepository extends JpaRepository<Image, Integer> {
+public interface ImageRepository extends JpaRepository<Image, Integer>, ImageRepositoryCustom {
 
     /**
-     * Поиск изображений по списку ID и пользователю.
-     *
-     * @param ids  Список ID изображений для поиска.
-     * @param user Пользователь, которому принадлежат изображения.
-     * @param sort Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @return Общий размер всех изображений в байтах (без учёта дедупликации в хранилище).
      */
-    List<Image> findByIdInAndUser(List<Integer> ids, Users user, Sort sort);
+    @Query("select coalesce(sum(i.fileSize), 0) from Image i")
+    long sumFileSize();
 
     /**
-     * Поиск изображений по размеру файла и пользователю.
+     * Используется один раз для пользователя, у которого ещё нет счётчиков занятого места.
      *
-     * @param minSize Минимальный размер файла.
-     * @param maxSize Максимальный размер файла.
-     * @param user    Пользователь, которому принадлежат изображения.
-     * @param sort    Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @param userId ID пользователя.
+     * @return Общий размер изображений пользователя в байтах.
      */
-    List<Image> findByFileSizeBetweenAndUser(Long minSize, Long maxSize, Users user, Sort sort);
+    @Query("select coalesce(sum(i.fileSize), 0) from Image i where i.user.id = :userId")
+    long sumFileSizeByUserId(@Param("userId") Integer userId);
 
     /**
-     * Поиск изображений по дате загрузки и пользователю.
-     *
-     * @param startDate Начальная дата для фильтрации изображений.
-     * @param endDate   Конечная дата для фильтрации изображений.
-     * @param user      Пользователь, которому принадлежат изображения.
-     * @param sort      Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @param userId ID пользователя.
+     * @return Количество изображений пользователя.
+     */
+    @Query("select count(i) from Image i where i.user.id = :userId")
+    long countByUserId(@Param("userId") Integer userId);
+
+    /**
+     * @param blobKey Ключ содержимого в хранилище.
+     * @return true, если на содержимое ссылается хотя бы одно изображение.
+     */
+    boolean existsByBlobKey(String blobKey);
+
+    /**
+     * @param userIds ID пользователей.
+     * @return Общий размер и количество изображений каждого из указанных пользователей, у которых они есть.
+     */
+    @Query("select new com.example.core.dto.UserImageUsage(i.user.id, coalesce(sum(i.fileSize), 0), count(i)) "
+            + "from Image i where i.user.id in :userIds group by i.user.id")
+    List<UserImageUsage> findUsageByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * @param userIds ID пользователей.
+     * @return Ключи содержимого изображений указанных пользователей (без повторов).
      */
-    List<Image> findByUploadDateBetweenAndUser(Date startDate, Date endDate, Users user, Sort sort);
+    @Query("select distinct i.blobKey from Image i where i.user.id in :userIds")
+    List<String> findBlobKeysByUserIdIn(@Param("userIds") Collection<Integer> userIds);
 
     /**
-     * Поиск изображений по списку ID.
+     * Удаляет все изображения указанных пользователей одним запросом.
      *
-     * @param ids  Список ID изображений для поиска.
-     * @param sort Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @param userIds ID пользователей.
+     * @return Количество удалённых изображений.
      */
-    List<Image> findByIdIn(List<Integer> ids, Sort sort);
+    @Modifying
+    @Query("delete from Image i where i.user.id in :userIds")
+    int deleteByUserIdIn(@Param("userIds") Collection<Integer> userIds);
 
     /**
-     * Поиск изображений по размеру файла.
+     * @param blobKeys Ключи содержимого.
+     * @return Ключи из указанных, на которые ещё ссылаются изображения.
+     */
+    @Query("select distinct i.blobKey from Image i where i.blobKey in :blobKeys")
+    Set<String> findReferencedBlobKeys(@Param("blobKeys") Collection<String> blobKeys);
+
+    /**
+     * Следующая пачка перцептивных хешей в порядке ID изображений (для заполнения индекса).
      *
-     * @param minSize Минимальный размер файла.
-     * @param maxSize Максимальный размер файла.
-     * @param sort    Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @param afterId  ID, после которого начинается пачка.
+     * @param pageable Размер пачки.
+     * @return Хеши изображений с ID больше afterId.
+     */
+    @Query("select new com.example.core.dto.ImageHashEntry(i.id, i.user.id, i.perceptualHash) from Image i "
+            + "where i.perceptualHash is not null and i.id > :afterId order by i.id")
+    List<ImageHashEntry> findHashesAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    /**
+     * @param userId   ID пользователя.
+     * @param blobKeys Ключи содержимого.
+     * @return Хеши изображений пользователя с указанными ключами содержимого.
      */
-    List<Image> findByFileSizeBetween(Long minSize, Long maxSize, Sort sort);
+    @Query("select new com.example.core.dto.ImageHashEntry(i.id, i.user.id, i.perceptualHash) from Image i "
+            + "where i.user.id = :userId and i.blobKey in :blobKeys and i.perceptualHash is not null")
+    List<ImageHashEntry> findHashes(@Param("userId") Integer userId, @Param("blobKeys") Collection<String> blobKeys);
 
     /**
-     * Поиск изображений по дате загрузки.
+     * @param userId   ID пользователя.
+     * @param checksum SHA-256 содержимого.
+     * @return Наименьший ID изображения пользователя с таким содержимым или null.
+     */
+    @Query("select min(i.id) from Image i where i.user.id = :userId and i.checksum = :checksum")
+    Integer findIdByUserIdAndChecksum(@Param("userId") Integer userId, @Param("checksum") String checksum);
+
+    /**
+     * Следующая пачка ссылок изображений на содержимое в порядке ID (для сверки с хранилищем).
      *
-     * @param startDate Начальная дата для фильтрации изображений.
-     * @param endDate   Конечная дата для фильтрации изображений.
-     * @param sort      Параметры сортировки.
-     * @return Список изображений, соответствующих указанным критериям.
+     * @param afterId  ID, после которого начинается пачка.
+     * @param pageable Размер пачки.
+     * @return Ссылки изображений с ID больше afterId.
      */
-    List<Image> findByUploadDateBetween(Date startDate, Date endDate, Sort sort);
+    @Query("select new com.example.core.dto.ImageBlobRef(i.id, i.user.id, i.blobKey, i.fileSize) from Image i "
+            + "where i.blobKey is not null and i.id > :afterId order by i.id")
+    List<ImageBlobRef> findBlobRefsAfter(@Param("afterId") Integer afterId, Pageable pageable);
 
     /**
-     * Получение всех изображений.
+     * Следующая пачка ключей содержимого, которое не скачивали с указанного момента, в порядке ключей.
+     * Для изображений, которые ни разу не скачивали, учитывается дата загрузки.
      *
-     * @param sort Параметры сортировки.
-     * @return Список всех изображений.
+     * @param afterKey Ключ, после которого начинается пачка.
+     * @param cutoff   Момент времени; содержимое, скачанное или загруженное позже, не выбирается.
+     * @param pageable Размер пачки.
+     * @return Ключи содержимого, на которое ссылаются только давно не скачиваемые изображения.
+     */
+    @Query("select i.blobKey from Image i where i.blobKey > :afterKey group by i.blobKey "
+            + "having max(coalesce(i.lastAccessed, i.uploadDate)) < :cutoff order by i.blobKey")
+    List<String> findIdleBlobKeys(@Param("afterKey") String afterKey, @Param("cutoff") Date cutoff, Pageable pageable);
+
+    /**
+     * @param imageId ID изображения.
+     * @return Метаданные для скачивания изображения без загрузки сущности.
      */
-    List<Image> findAll(Sort sort);
+    @Query("select new com.example.core.dto.ImageDownloadInfo(i.id, i.user.id, i.blobKey, i.checksum, "
+            + "i.contentType, i.originalFileName, i.fileSize) from Image i where i.id = :imageId")
+    Optional<ImageDownloadInfo> findDownloadInfo(@Param("imageId") Integer imageId);
 }
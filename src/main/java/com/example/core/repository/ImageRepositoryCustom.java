@@ -0,0 +1,46 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ImageAccessCount;
+import com.example.core.dto.ImagePage;
+import com.example.core.model.Image;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Дополнительные методы репозитория изображений, реализованные вручную.
+ */
+public interface ImageRepositoryCustom {
+
+    /**
+     * Постраничная выборка метаданных изображений по ключу (keyset pagination).
+     * Страница начинается сразу после позиции курсора, поэтому стоимость запроса
+     * не зависит от номера страницы.
+     *
+     * @param filter     Условия отбора изображений (может быть null).
+     * @param sortField  Поле сортировки; ID изображения используется как дополнительный ключ.
+     * @param descending true для сортировки по убыванию.
+     * @param after      Курсор, полученный с предыдущей страницей (null для первой страницы).
+     * @param pageSize   Запрошенный размер страницы (null - размер по умолчанию).
+     *                   Ограничивается значением image.list.max-page-size.
+     * @return Страница метаданных изображений с курсором следующей страницы.
+     */
+    ImagePage findPage(Specification<Image> filter, ImageSortField sortField,
+                       boolean descending, ImageCursor after, Integer pageSize);
+
+    /**
+     * Сохраняет метаданные изображений одним пакетным INSERT через JDBC.
+     * Идентификаторы сохранённых изображений в объекты не записываются.
+     *
+     * @param images Изображения для сохранения; у каждого должен быть задан пользователь.
+     */
+    void insertAll(List<Image> images);
+
+    /**
+     * Прибавляет накопленные скачивания к счётчикам изображений одним пакетным UPDATE через JDBC.
+     * Время последнего скачивания не сдвигается назад. Удалённые изображения пропускаются.
+     *
+     * @param counts Скачивания изображений.
+     */
+    void addAccessCounts(List<ImageAccessCount> counts);
+}
@@ -0,0 +1,140 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ImageAccessCount;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.ImageSummary;
+import com.example.core.model.Image;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Реализация {@link ImageRepositoryCustom} на JPA Criteria API.
+ */
+public class ImageRepositoryImpl implements ImageRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO images "
+            + "(name, original_file_name, file_size, content_type, upload_date, checksum, blob_key, perceptual_hash, user_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ADD_ACCESS_SQL = "UPDATE images "
+            + "SET download_count = COALESCE(download_count, 0) + ?, "
+            + "last_accessed = CASE WHEN last_accessed IS NULL OR last_accessed < ? THEN ? ELSE last_accessed END "
+            + "WHERE id = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${image.list.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${image.list.max-page-size:200}")
+    private int maxPageSize;
+
+    @Override
+    public ImagePage findPage(Specification<Image> filter, ImageSortField sortField,
+                              boolean descending, ImageCursor after, Integer pageSize) {
+        int size = pageSize == null || pageSize <= 0 ? defaultPageSize : Math.min(pageSize, maxPageSize);
+
+        // Запрашиваем на одно изображение больше, чтобы понять, есть ли следующая страница
+        List<ImageSummary> items = select(filter, sortField, descending, after, size + 1);
+        if (items.size() <= size) {
+            return new ImagePage(items, null);
+        }
+        List<ImageSummary> page = new ArrayList<>(items.subList(0, size));
+        ImageCursor next = ImageCursor.after(page.get(size - 1), sortField, descending);
+        return new ImagePage(page, next.encode());
+    }
+
+    private List<ImageSummary> select(Specification<Image> filter, ImageSortField sortField,
+                                      boolean descending, ImageCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ImageSummary> query = cb.createQuery(ImageSummary.class);
+        Root<Image> root = query.from(Image.class);
+        query.select(cb.construct(ImageSummary.class,
+                root.get("id"),
+                root.get("name"),
+                root.get("originalFileName"),
+                root.get("fileSize"),
+                root.get("contentType"),
+                root.get("uploadDate")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (after != null) {
+            predicates.add(sortField == ImageSortField.UPLOAD_DATE
+                    ? afterKey(cb, root.get("uploadDate"), new Date(after.getValue()), root.get("id"), after.getId(), descending)
+                    : afterKey(cb, root.get("fileSize"), after.getValue(), root.get("id"), after.getId(), descending));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        Path<?> sortPath = root.get(sortField.getProperty());
+        query.orderBy(descending
+                ? List.of(cb.desc(sortPath), cb.desc(root.get("id")))
+                : List.of(cb.asc(sortPath), cb.asc(root.get("id"))));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void insertAll(List<Image> images) {
+        // Идентификаторы IDENTITY отключают пакетную вставку в Hibernate, поэтому вставляем через JDBC
+        jdbcTemplate.batchUpdate(INSERT_SQL, images, images.size(), (ps, image) -> {
+            ps.setString(1, image.getName());
+            ps.setString(2, image.getOriginalFileName());
+            ps.setLong(3, image.getFileSize());
+            ps.setString(4, image.getContentType());
+            ps.setTimestamp(5, new Timestamp(image.getUploadDate().getTime()));
+            ps.setString(6, image.getChecksum());
+            ps.setString(7, image.getBlobKey());
+            ps.setObject(8, image.getPerceptualHash(), Types.BIGINT);
+            ps.setInt(9, image.getUser().getId());
+        });
+    }
+
+    @Override
+    public void addAccessCounts(List<ImageAccessCount> counts) {
+        jdbcTemplate.batchUpdate(ADD_ACCESS_SQL, counts, counts.size(), (ps, count) -> {
+            Timestamp lastAccessed = new Timestamp(count.getLastAccessed().getTime());
+            ps.setLong(1, count.getDownloads());
+            ps.setTimestamp(2, lastAccessed);
+            ps.setTimestamp(3, lastAccessed);
+            ps.setInt(4, count.getImageId());
+        });
+    }
+
+    /**
+     * Строит условие "ключ (value, id) строго после позиции курсора" в порядке сортировки.
+     */
+    private <Y extends Comparable<? super Y>> Predicate afterKey(CriteriaBuilder cb,
+                                                                  Expression<Y> key, Y value,
+                                                                  Expression<Integer> id, Integer lastId,
+                                                                  boolean descending) {
+        if (descending) {
+            return cb.or(cb.lessThan(key, value),
+                    cb.and(cb.equal(key, value), cb.lessThan(id, lastId)));
+        }
+        return cb.or(cb.greaterThan(key, value),
+                cb.and(cb.equal(key, value), cb.greaterThan(id, lastId)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ImageSummary;
+
+/**
+ * Поля, по которым поддерживается постраничная выборка изображений.
+ * Вместе с ID изображения каждое поле образует уникальный ключ сортировки.
+ */
+public enum ImageSortField {
+    /**
+     * Сортировка по дате загрузки.
+     */
+    UPLOAD_DATE("uploadDate"),
+
+    /**
+     * Сортировка по размеру файла.
+     */
+    FILE_SIZE("fileSize");
+
+    private final String property;
+
+    ImageSortField(String property) {
+        this.property = property;
+    }
+
+    /**
+     * @return Имя свойства сущности Image, соответствующее полю.
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Возвращает значение поля сортировки в виде числа для записи в курсор.
+     *
+     * @param image Метаданные изображения.
+     * @return Время загрузки в миллисекундах или размер файла в байтах.
+     */
+    public long valueOf(ImageSummary image) {
+        return this == UPLOAD_DATE ? image.getUploadDate().getTime() : image.getFileSize();
+    }
+
+    /**
+     * Находит поле сортировки по имени свойства.
+     *
+     * @param property Имя свойства ("uploadDate" или "fileSize").
+     * @return Поле сортировки.
+     * @throws IllegalArgumentException Если сортировка по свойству не поддерживается.
+     */
+    public static ImageSortField fromProperty(String property) {
+        for (ImageSortField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Сортировка по полю " + property + " не поддерживается");
+    }
+}
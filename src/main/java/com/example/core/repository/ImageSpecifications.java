@@ -0,0 +1,115 @@
+package com.example.core.repository;
+
+import com.example.core.model.Image;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Условия отбора изображений для {@link ImageRepositoryCustom#findPage}.
+ * Условия комбинируются через {@link Specification#and}, поэтому любой набор
+ * фильтров выполняется одним запросом.
+ */
+public final class ImageSpecifications {
+
+    private ImageSpecifications() {
+    }
+
+    /**
+     * Объединяет все заданные фильтры. Фильтры со значением null не применяются,
+     * границы диапазонов размера и даты можно задавать по отдельности.
+     *
+     * @param ownerId   ID пользователя, которому принадлежат изображения (null - все пользователи).
+     * @param ids       Список ID изображений (необязательно).
+     * @param minSize   Минимальный размер файла (необязательно).
+     * @param maxSize   Максимальный размер файла (необязательно).
+     * @param startDate Начальная дата загрузки (необязательно).
+     * @param endDate   Конечная дата загрузки (необязательно).
+     * @return Условие отбора; если фильтры не заданы, отбираются все изображения.
+     */
+    public static Specification<Image> matching(Integer ownerId, List<Integer> ids,
+                                                Long minSize, Long maxSize,
+                                                Date startDate, Date endDate) {
+        Specification<Image> spec = Specification.where(null);
+        if (ownerId != null) {
+            spec = spec.and(ownedBy(ownerId));
+        }
+        if (ids != null && !ids.isEmpty()) {
+            spec = spec.and(idIn(ids));
+        }
+        if (minSize != null) {
+            spec = spec.and(fileSizeAtLeast(minSize));
+        }
+        if (maxSize != null) {
+            spec = spec.and(fileSizeAtMost(maxSize));
+        }
+        if (startDate != null) {
+            spec = spec.and(uploadedFrom(startDate));
+        }
+        if (endDate != null) {
+            spec = spec.and(uploadedTo(endDate));
+        }
+        return spec;
+    }
+
+    /**
+     * Изображения указанного пользователя.
+     *
+     * @param userId ID пользователя, которому принадлежат изображения.
+     * @return Условие отбора.
+     */
+    public static Specification<Image> ownedBy(Integer userId) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    /**
+     * Изображения с указанными ID.
+     *
+     * @param ids Список ID изображений.
+     * @return Условие отбора.
+     */
+    public static Specification<Image> idIn(List<Integer> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    /**
+     * Изображения размером не меньше указанного.
+     *
+     * @param minSize Минимальный размер файла (включительно).
+     * @return Условие отбора.
+     */
+    public static Specification<Image> fileSizeAtLeast(Long minSize) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fileSize"), minSize);
+    }
+
+    /**
+     * Изображения размером не больше указанного.
+     *
+     * @param maxSize Максимальный размер файла (включительно).
+     * @return Условие отбора.
+     */
+    public static Specification<Image> fileSizeAtMost(Long maxSize) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("fileSize"), maxSize);
+    }
+
+    /**
+     * Изображения, загруженные не раньше указанной даты.
+     *
+     * @param startDate Начальная дата (включительно).
+     * @return Условие отбора.
+     */
+    public static Specification<Image> uploadedFrom(Date startDate) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("uploadDate"), startDate);
+    }
+
+    /**
+     * Изображения, загруженные не позже указанной даты.
+     *
+     * @param endDate Конечная дата (включительно).
+     * @return Условие отбора.
+     */
+    public static Specification<Image> uploadedTo(Date endDate) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("uploadDate"), endDate);
+    }
+}
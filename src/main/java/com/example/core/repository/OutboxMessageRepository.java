@@ -0,0 +1,32 @@
+package com.example.core.repository;
+
+import com.example.core.model.OutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Репозиторий для работы с исходящими уведомлениями.
+ */
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Выбирает и блокирует уведомления, готовые к отправке.
+     * Строки, заблокированные другим экземпляром приложения, пропускаются (SKIP LOCKED).
+     *
+     * @param now      Текущий момент времени.
+     * @param pageable Размер выбираемой пачки.
+     * @return Список уведомлений в порядке создания.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<OutboxMessage> findByNextAttemptAtLessThanEqualOrderByIdAsc(Date now, Pageable pageable);
+}
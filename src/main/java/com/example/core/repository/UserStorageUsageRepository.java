@@ -0,0 +1,69 @@
+package com.example.core.repository;
+
+import com.example.core.model.UserStorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+/**
+ * Репозиторий счётчиков занятого пользователями места.
+ * Счётчики изменяются одним UPDATE без предварительного чтения,
+ * поэтому параллельные загрузки одного пользователя не теряют изменения.
+ */
+@Repository
+public interface UserStorageUsageRepository extends JpaRepository<UserStorageUsage, Integer> {
+
+    /**
+     * Резервирует место, если после резервирования квота не будет превышена.
+     * Индивидуальная квота пользователя имеет приоритет над квотой роли.
+     *
+     * @param userId           ID пользователя.
+     * @param bytes            Резервируемый объём в байтах.
+     * @param count            Резервируемое количество изображений.
+     * @param defaultMaxBytes  Квота роли на объём.
+     * @param defaultMaxImages Квота роли на количество изображений.
+     * @return 1, если место зарезервировано; 0, если квота превышена или счётчиков пользователя ещё нет.
+     */
+    @Modifying
+    @Query("update UserStorageUsage u set u.bytesUsed = u.bytesUsed + :bytes, u.imageCount = u.imageCount + :count "
+            + "where u.userId = :userId "
+            + "and u.bytesUsed + :bytes <= coalesce(u.maxBytes, :defaultMaxBytes) "
+            + "and u.imageCount + :count <= coalesce(u.maxImages, :defaultMaxImages)")
+    int reserve(@Param("userId") Integer userId,
+                @Param("bytes") long bytes,
+                @Param("count") int count,
+                @Param("defaultMaxBytes") long defaultMaxBytes,
+                @Param("defaultMaxImages") int defaultMaxImages);
+
+    /**
+     * Освобождает место после удаления изображений или неудачной загрузки.
+     *
+     * @param userId ID пользователя.
+     * @param bytes  Освобождаемый объём в байтах.
+     * @param count  Освобождаемое количество изображений.
+     * @return Количество изменённых строк.
+     */
+    @Modifying
+    @Query("update UserStorageUsage u set u.bytesUsed = u.bytesUsed - :bytes, u.imageCount = u.imageCount - :count "
+            + "where u.userId = :userId")
+    int release(@Param("userId") Integer userId, @Param("bytes") long bytes, @Param("count") int count);
+
+    /**
+     * Пересчитывает счётчики пользователей по таблице images (для ручной сверки).
+     * Не учитывает место, зарезервированное ещё не зафиксированными загрузками, поэтому
+     * при работающих загрузках не применяется: удаления уменьшают счётчики на свой размер.
+     *
+     * @param userIds ID пользователей.
+     * @return Количество изменённых строк.
+     */
+    @Modifying
+    @Query("update UserStorageUsage u set "
+            + "u.bytesUsed = (select coalesce(sum(i.fileSize), 0) from Image i where i.user.id = u.userId), "
+            + "u.imageCount = (select count(i) from Image i where i.user.id = u.userId) "
+            + "where u.userId in :userIds")
+    int recount(@Param("userIds") Collection<Integer> userIds);
+}
@@ -1,9 +1,15 @@
 package com.example.core.repository;
 
+import com.example.core.dto.UserIdentity;
 import com.example.core.model.Users;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -21,6 +27,16 @@ public interface UsersRepository extends JpaRepository<Users, Integer> {
      */
     Optional<Users> findByEmail(String email);
 
+    /**
+     * Поиск сведений о пользователе по адресу электронной почты без загрузки сущности.
+     *
+     * @param email Адрес электронной почты пользователя.
+     * @return Optional, содержащий сведения о пользователе, если он найден.
+     */
+    @Query("select new com.example.core.dto.UserIdentity(u.id, u.email, u.role, u.isBlocked) "
+            + "from Users u where u.email = :email")
+    Optional<UserIdentity> findIdentityByEmail(@Param("email") String email);
+
     /**
      * Проверка, существует ли пользователь с указанным адресом электронной почты.
      *
@@ -28,4 +44,39 @@ public interface UsersRepository extends JpaRepository<Users, Integer> {
      * @return true, если пользователь существует, иначе false.
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Блокирует или разблокирует пользователей одним запросом, без загрузки сущностей.
+     *
+     * @param ids     ID пользователей.
+     * @param blocked Новое состояние блокировки.
+     * @return Количество найденных пользователей.
+     */
+    @Modifying
+    @Query("update Users u set u.isBlocked = :blocked where u.id in :ids")
+    int updateBlocked(@Param("ids") Collection<Integer> ids, @Param("blocked") boolean blocked);
+
+    /**
+     * @param ids ID пользователей.
+     * @return ID заблокированных пользователей из указанных.
+     */
+    @Query("select u.id from Users u where u.id in :ids and u.isBlocked = true")
+    List<Integer> findBlockedIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Замена хеша пароля без загрузки сущности.
+     *
+     * @param email    Адрес электронной почты пользователя.
+     * @param password Новый хеш пароля.
+     * @return Количество изменённых строк.
+     */
+    @Modifying
+    @Query("update Users u set u.password = :password where u.email = :email")
+    int updatePassword(@Param("email") String email, @Param("password") String password);
+
+    /**
+     * @return ID всех заблокированных пользователей.
+     */
+    @Query("select u.id from Users u where u.isBlocked = true")
+    List<Integer> findAllBlockedIds();
 }
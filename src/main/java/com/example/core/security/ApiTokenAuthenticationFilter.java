@@ -0,0 +1,69 @@
+package com.example.core.security;
+
+import com.example.core.dto.UserIdentity;
+import com.example.core.service.ApiTokenService;
+import com.example.core.service.BlockedUsers;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Аутентификация запросов по API-токену из заголовка {@code Authorization: Bearer <token>}.
+ * Недействительный токен и токен заблокированного пользователя оставляют запрос анонимным,
+ * и доступ к защищённым адресам отклоняется со статусом 401.
+ * Фильтр не является бином, чтобы Spring Boot не зарегистрировал его вне цепочки Spring Security.
+ */
+public class ApiTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    /**
+     * Префикс значения заголовка Authorization.
+     */
+    static final String BEARER_PREFIX = "Bearer ";
+
+    private final ApiTokenService apiTokenService;
+
+    private final BlockedUsers blockedUsers;
+
+    public ApiTokenAuthenticationFilter(ApiTokenService apiTokenService, BlockedUsers blockedUsers) {
+        this.apiTokenService = apiTokenService;
+        this.blockedUsers = blockedUsers;
+    }
+
+    /**
+     * @param request Запрос.
+     * @return true, если запрос содержит API-токен.
+     */
+    static boolean hasBearerToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header != null && header.startsWith(BEARER_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (hasBearerToken(request)) {
+            String token = request.getHeader(HttpHeaders.AUTHORIZATION).substring(BEARER_PREFIX.length()).trim();
+            Optional<UserIdentity> identity = apiTokenService.authenticate(token);
+            if (identity.isPresent() && !blockedUsers.isBlocked(identity.get().getId())) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        identity.get().getEmail(), null,
+                        List.of(new SimpleGrantedAuthority("ROLE_" + identity.get().getRole().name())));
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authentication);
+                SecurityContextHolder.setContext(context);
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -18,6 +18,11 @@ public class OurUsersDetails implements UserDetails {
 
     private final Users user;
 
+    /**
+     * Признак блокировки пользователя модератором.
+     */
+    private final boolean locked;
+
     /**
      * Возвращает права доступа пользователя.
      *
@@ -65,7 +70,7 @@ public class OurUsersDetails implements UserDetails {
      */
     @Override
     public boolean isAccountNonLocked() {
-        return true;
+        return !locked;
     }
 
     /**
@@ -1,16 +1,29 @@
 package com.example.core.security;
 
+import com.example.core.service.ApiTokenService;
+import com.example.core.service.BlockedUsers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import java.util.Map;
 
 /**
  * Конфигурация безопасности приложения.
@@ -21,6 +34,18 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @EnableMethodSecurity
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+    /**
+     * Идентификатор кодировщика, которым хешируются новые пароли.
+     */
+    private static final String PASSWORD_ENCODER_ID = "bcrypt";
+
+    /**
+     * Стоимость bcrypt (log2 числа раундов). При увеличении хеши пользователей
+     * пересчитываются при их следующем входе.
+     */
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     /**
      * Конфигурация настроек HTTP безопасности.
      *
@@ -29,26 +54,51 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Override
     protected void configure(HttpSecurity http) throws Exception {
+        http.csrf().disable(); // Отключение защиты от CSRF
+        authorizeRequests(http);
         http
-                .csrf().disable() // Отключение защиты от CSRF
-                .authorizeRequests()
-                .antMatchers("/user/register").permitAll() // Разрешить доступ к регистрации без аутентификации
-                .antMatchers("/moderator/**").hasRole("MODERATOR") // Доступ только для модераторов
-                .anyRequest().authenticated() // Все остальные запросы требуют аутентификации
-                .and()
                 .formLogin()
                 .permitAll() // Разрешить доступ к форме входа для всех
                 .and()
                 .exceptionHandling(); // Обработка исключений
     }
 
+    /**
+     * Правила доступа, общие для входа по форме и по API-токену.
+     *
+     * @param http объект HttpSecurity для настройки параметров безопасности.
+     * @throws Exception если возникает ошибка в процессе настройки.
+     */
+    static void authorizeRequests(HttpSecurity http) throws Exception {
+        http
+                .authorizeRequests()
+                .antMatchers("/user/register").permitAll() // Разрешить доступ к регистрации без аутентификации
+                .antMatchers(HttpMethod.POST, "/user/token").permitAll() // Выпуск токена проверяет пароль сам
+                .antMatchers("/moderator/**").hasRole("MODERATOR") // Доступ только для модераторов
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll() // Проверка состояния и сбор метрик
+                .antMatchers("/actuator/**").hasRole("MODERATOR")
+                .anyRequest().authenticated(); // Все остальные запросы требуют аутентификации
+    }
+
+    /**
+     * Бин менеджера аутентификации для проверки пароля при выпуске API-токена.
+     *
+     * @return менеджер аутентификации.
+     * @throws Exception если возникает ошибка в процессе настройки.
+     */
+    @Bean
+    @Override
+    public AuthenticationManager authenticationManagerBean() throws Exception {
+        return super.authenticationManagerBean();
+    }
+
     /**
      * Бин, предоставляющий реализацию UserDetailsService для аутентификации пользователей.
      *
      * @return реализация UserDetailsService.
      */
     @Bean
-    public UserDetailsService userDetailsService() {
+    public UsersDetailsService userDetailsService() {
         return new UsersDetailsService();
     }
 
@@ -62,16 +112,52 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService());
         provider.setPasswordEncoder(encoder());
+        // Хеши устаревшего формата или меньшей стоимости пересчитываются после успешного входа
+        provider.setUserDetailsPasswordService(userDetailsService());
         return provider;
     }
 
     /**
      * Бин, предоставляющий кодировщик паролей.
+     * Новые пароли хешируются bcrypt с префиксом {bcrypt}; хеши без префикса,
+     * сохранённые до перехода на DelegatingPasswordEncoder, проверяются как bcrypt.
      *
      * @return кодировщик паролей, используемый для шифрования паролей.
      */
     @Bean
     public PasswordEncoder encoder() {
-        return new BCryptPasswordEncoder();
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(PASSWORD_ENCODER_ID,
+                Map.of(PASSWORD_ENCODER_ID, new BCryptPasswordEncoder(bcryptStrength)));
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder(bcryptStrength));
+        return encoder;
+    }
+
+    /**
+     * Отдельная цепочка для запросов с API-токеном: без сессии и без проверки пароля.
+     * Выполняется раньше основной цепочки и применяется только к запросам с заголовком
+     * {@code Authorization: Bearer}.
+     */
+    @Configuration
+    @Order(1)
+    static class ApiTokenSecurityConfig extends WebSecurityConfigurerAdapter {
+
+        @Autowired
+        private ApiTokenService apiTokenService;
+
+        @Autowired
+        private BlockedUsers blockedUsers;
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http
+                    .requestMatcher(ApiTokenAuthenticationFilter::hasBearerToken)
+                    .csrf().disable()
+                    .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and()
+                    .addFilterBefore(new ApiTokenAuthenticationFilter(apiTokenService, blockedUsers),
+                            UsernamePasswordAuthenticationFilter.class)
+                    .exceptionHandling().authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
+            authorizeRequests(http);
+        }
     }
 }
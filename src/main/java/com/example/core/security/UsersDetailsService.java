@@ -2,11 +2,15 @@ package com.example.core.security;
 
 import com.example.core.model.Users;
 import com.example.core.repository.UsersRepository;
+import com.example.core.service.BlockedUsers;
+import com.example.core.service.UserIdentityCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -15,11 +19,17 @@ import java.util.Optional;
  * Реализует интерфейс UserDetailsService для интеграции с Spring Security.
  */
 @Service
-public class UsersDetailsService implements UserDetailsService {
+public class UsersDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UsersRepository repository;
 
+    @Autowired
+    private UserIdentityCache userIdentityCache;
+
+    @Autowired
+    private BlockedUsers blockedUsers;
+
     /**
      * Загружает пользователя по имени пользователя (email).
      *
@@ -29,8 +39,29 @@ public class UsersDetailsService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // Для проверки пароля нужен хеш, поэтому пользователь загружается из базы;
+        // заодно обновляем кэш, чтобы следующие запросы пользователя обходились без базы
         Optional<Users> user = repository.findByEmail(username);
-        return user.map(OurUsersDetails::new)
+        user.ifPresent(userIdentityCache::put);
+        // Заблокированному пользователю Spring Security откажет во входе (LockedException)
+        return user.map(u -> new OurUsersDetails(u, u.isBlocked() || blockedUsers.isBlocked(u.getId())))
                 .orElseThrow(() -> new UsernameNotFoundException(String.format("%s - не найден", username)));
     }
+
+    /**
+     * Сохраняет пересчитанный хеш пароля после успешного входа
+     * (устаревший формат хеша или увеличенная стоимость bcrypt).
+     *
+     * @param user        Пользователь, прошедший проверку пароля.
+     * @param newPassword Новый хеш пароля.
+     * @return Пользователь с новым хешем пароля.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        repository.updatePassword(user.getUsername(), newPassword);
+        Users updated = repository.findByEmail(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException(String.format("%s - не найден", user.getUsername())));
+        return new OurUsersDetails(updated, !user.isAccountNonLocked());
+    }
 }
@@ -0,0 +1,164 @@
+package com.example.core.service;
+
+import com.example.core.dto.ApiTokenResponse;
+import com.example.core.dto.UserIdentity;
+import com.example.core.model.ApiToken;
+import com.example.core.model.Users;
+import com.example.core.repository.ApiTokenRepository;
+import com.example.core.repository.UsersRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Сервис API-токенов.
+ * Токен выпускается после однократной проверки пароля и затем заменяет её: проверка токена —
+ * это SHA-256 и обращение к кэшу, без bcrypt и, при попадании в кэш, без запроса к базе данных.
+ * Кэш токенов хранит только владельца и срок действия; роль и признак блокировки берутся
+ * из {@link UserIdentityCache}, поэтому их изменение сразу действует и для токенов.
+ * Блокировка пользователя проверяется отдельно по {@link BlockedUsers}.
+ */
+@Service
+@Slf4j
+public class ApiTokenService {
+
+    /**
+     * Префикс токена, по которому его легко найти в журналах и репозиториях при утечке.
+     */
+    private static final String TOKEN_PREFIX = "core_";
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final ApiTokenRepository apiTokenRepository;
+
+    private final UsersRepository usersRepository;
+
+    private final UserIdentityCache userIdentityCache;
+
+    private final Duration tokenTtl;
+
+    private final Cache<String, CachedToken> cache;
+
+    private final SecureRandom random = new SecureRandom();
+
+    public ApiTokenService(ApiTokenRepository apiTokenRepository,
+                           UsersRepository usersRepository,
+                           UserIdentityCache userIdentityCache,
+                           MeterRegistry meterRegistry,
+                           @Value("${security.api-token.ttl:30d}") Duration tokenTtl,
+                           @Value("${security.api-token.cache.max-size:10000}") long cacheMaxSize,
+                           @Value("${security.api-token.cache.ttl-seconds:300}") long cacheTtlSeconds) {
+        this.apiTokenRepository = apiTokenRepository;
+        this.usersRepository = usersRepository;
+        this.userIdentityCache = userIdentityCache;
+        this.tokenTtl = tokenTtl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "api.token");
+    }
+
+    /**
+     * Выпускает новый API-токен пользователя.
+     *
+     * @param user Пользователь, прошедший проверку пароля.
+     * @return Токен и срок его действия.
+     */
+    @Transactional
+    public ApiTokenResponse issue(UserIdentity user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + tokenTtl.toMillis());
+        Users owner = usersRepository.getReferenceById(user.getId());
+        apiTokenRepository.save(new ApiToken(null, hash(token), now, expiresAt, owner));
+        return new ApiTokenResponse(token, expiresAt);
+    }
+
+    /**
+     * Находит владельца действующего токена.
+     *
+     * @param token Токен из заголовка Authorization.
+     * @return Optional, содержащий сведения о владельце, если токен действителен и владелец существует.
+     */
+    public Optional<UserIdentity> authenticate(String token) {
+        if (token == null || !token.startsWith(TOKEN_PREFIX)) {
+            return Optional.empty();
+        }
+        String tokenHash = hash(token);
+        CachedToken cached = cache.get(tokenHash, key -> apiTokenRepository.findActive(key, new Date())
+                .map(found -> new CachedToken(found.getUser().getId(), found.getUser().getEmail(),
+                        found.getExpiresAt().getTime()))
+                .orElse(null));
+        if (cached == null) {
+            return Optional.empty();
+        }
+        if (cached.expiresAt() <= System.currentTimeMillis()) {
+            cache.invalidate(tokenHash);
+            return Optional.empty();
+        }
+        // Удалённый пользователь не найдётся, а новый с тем же email будет иметь другой ID
+        return userIdentityCache.find(cached.email())
+                .filter(identity -> identity.getId().equals(cached.userId()));
+    }
+
+    /**
+     * Отзывает токен.
+     *
+     * @param token Токен.
+     * @return true, если токен был найден и удалён.
+     */
+    @Transactional
+    public boolean revoke(String token) {
+        String tokenHash = hash(token);
+        cache.invalidate(tokenHash);
+        return apiTokenRepository.deleteByTokenHash(tokenHash) > 0;
+    }
+
+    /**
+     * Удаляет истёкшие токены.
+     */
+    @Scheduled(fixedDelayString = "${security.api-token.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = apiTokenRepository.deleteExpired(new Date());
+        if (deleted > 0) {
+            log.info("Удалено {} истёкших API-токенов", deleted);
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Владелец токена и срок действия токена (миллисекунды эпохи).
+     */
+    private record CachedToken(Integer userId, String email, long expiresAt) {
+    }
+}
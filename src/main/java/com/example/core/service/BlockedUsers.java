@@ -0,0 +1,111 @@
+package com.example.core.service;
+
+import com.example.core.repository.UsersRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+
+/**
+ * Множество ID заблокированных пользователей в памяти (сжатая битовая карта Roaring).
+ * Проверка блокировки на входе, загрузке и скачивании не обращается к базе данных.
+ * Карта загружается при старте, обновляется при блокировке и разблокировке
+ * и периодически перечитывается, чтобы учесть изменения, сделанные другими экземплярами.
+ * Читатели работают с неизменяемым снимком; запись заменяет снимок целиком.
+ */
+@Component
+@Slf4j
+public class BlockedUsers {
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile RoaringBitmap snapshot = new RoaringBitmap();
+
+    /**
+     * Номер изменения; перечитывание из базы не применяется, если за время запроса карта изменилась.
+     */
+    private long version;
+
+    @PostConstruct
+    void init() {
+        reload();
+        meterRegistry.gauge("user.blocked", this, blocked -> blocked.snapshot.getLongCardinality());
+    }
+
+    /**
+     * @param userId ID пользователя.
+     * @return true, если пользователь заблокирован.
+     */
+    public boolean isBlocked(Integer userId) {
+        return userId != null && snapshot.contains(userId);
+    }
+
+    /**
+     * Отмечает пользователей заблокированными или разблокированными.
+     * Внутри транзакции изменение применяется после её фиксации.
+     *
+     * @param userIds ID пользователей.
+     * @param blocked Новое состояние блокировки.
+     */
+    public void update(Collection<Integer> userIds, boolean blocked) {
+        int[] ids = userIds.stream().mapToInt(Integer::intValue).toArray();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(ids, blocked);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(ids, blocked);
+            }
+        });
+    }
+
+    /**
+     * Перечитывает множество заблокированных пользователей из базы данных.
+     */
+    @Scheduled(fixedDelayString = "${user.blocked.reload-interval-ms:60000}",
+            initialDelayString = "${user.blocked.reload-interval-ms:60000}")
+    public void reload() {
+        long before;
+        synchronized (this) {
+            before = version;
+        }
+        RoaringBitmap loaded = RoaringBitmap.bitmapOf(usersRepository.findAllBlockedIds().stream()
+                .mapToInt(Integer::intValue)
+                .toArray());
+        loaded.runOptimize();
+        synchronized (this) {
+            if (version != before) {
+                // Карта изменилась во время чтения: снимок из базы мог устареть, применим его в следующий раз
+                return;
+            }
+            snapshot = loaded;
+        }
+        log.debug("Загружено {} заблокированных пользователей", loaded.getLongCardinality());
+    }
+
+    private synchronized void apply(int[] ids, boolean blocked) {
+        RoaringBitmap updated = snapshot.clone();
+        if (blocked) {
+            updated.add(ids);
+        } else {
+            for (int id : ids) {
+                updated.remove(id);
+            }
+        }
+        snapshot = updated;
+        version++;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.core.service;
+
+import com.example.core.dto.ImageDownloadInfo;
+import com.example.core.repository.ImageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Кэш для повторных скачиваний изображений и уменьшенных копий без обращения к базе данных и диску.
+ * <ul>
+ *     <li>Метаданные изображений ({@link ImageDownloadInfo}) — не больше image.cache.metadata.max-size
+ *     записей, каждая живёт image.cache.metadata.ttl-seconds.</li>
+ *     <li>Содержимое файлов не больше image.cache.max-entry-bytes — в прямых (direct) буферах вне кучи,
+ *     общим объёмом не больше image.cache.max-bytes. Содержимое адресуется хешем и не меняется,
+ *     поэтому удаляется из кэша только при удалении из хранилища.</li>
+ * </ul>
+ * Оба кэша вытесняют записи по W-TinyLFU: редко запрашиваемый файл не вытесняет часто скачиваемые.
+ * Прямые буферы учитываются в -XX:MaxDirectMemorySize, а память вытесненного буфера освобождается
+ * при сборке мусора его небольшого объекта в куче.
+ */
+@Service
+public class ImageDownloadCache {
+
+    private final ImageRepository imageRepository;
+
+    private final Cache<Integer, ImageDownloadInfo> metadata;
+
+    private final Cache<String, ByteBuffer> content;
+
+    private final long maxEntryBytes;
+
+    public ImageDownloadCache(ImageRepository imageRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${image.cache.metadata.max-size:10000}") long metadataMaxSize,
+                              @Value("${image.cache.metadata.ttl-seconds:300}") long metadataTtlSeconds,
+                              @Value("${image.cache.max-bytes:64MB}") DataSize maxBytes,
+                              @Value("${image.cache.max-entry-bytes:1MB}") DataSize maxEntryBytes) {
+        this.imageRepository = imageRepository;
+        this.metadata = Caffeine.newBuilder()
+                .maximumSize(metadataMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(metadataTtlSeconds))
+                .recordStats()
+                .build();
+        this.content = Caffeine.newBuilder()
+                .maximumWeight(maxBytes.toBytes())
+                .weigher((String key, ByteBuffer buffer) -> buffer.capacity())
+                .recordStats()
+                .build();
+        // Файл, который больше всего кэша, всё равно был бы сразу вытеснен
+        this.maxEntryBytes = Math.min(maxEntryBytes.toBytes(), Math.min(maxBytes.toBytes(), Integer.MAX_VALUE));
+
+        CaffeineCacheMetrics.monitor(meterRegistry, metadata, "image.metadata");
+        CaffeineCacheMetrics.monitor(meterRegistry, content, "image.content");
+        Gauge.builder("image.cache.hit-ratio", metadata, cache -> cache.stats().hitRate())
+                .tag("cache", "image.metadata")
+                .register(meterRegistry);
+        Gauge.builder("image.cache.hit-ratio", content, cache -> cache.stats().hitRate())
+                .tag("cache", "image.content")
+                .register(meterRegistry);
+        Gauge.builder("image.cache.bytes", content,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает метаданные изображения, при промахе загружая их из базы.
+     * Отсутствующие изображения не кэшируются.
+     *
+     * @param imageId ID изображения.
+     * @return Метаданные для скачивания.
+     * @throws RuntimeException Если изображение не найдено.
+     */
+    public ImageDownloadInfo info(Integer imageId) {
+        ImageDownloadInfo info = metadata.get(imageId, id -> imageRepository.findDownloadInfo(id).orElse(null));
+        if (info == null) {
+            throw new RuntimeException("Изображение не найдено");
+        }
+        return info;
+    }
+
+    /**
+     * @param key Ключ содержимого или ключ с именем варианта ({@code ключ.вариант}).
+     * @return Закэшированное содержимое (собственная позиция для каждого вызова) или null.
+     */
+    public ByteBuffer getContent(String key) {
+        ByteBuffer buffer = content.getIfPresent(key);
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    /**
+     * Читает содержимое в кэш, если оно не больше image.cache.max-entry-bytes.
+     * Параллельные запросы одного и того же содержимого читают файл один раз.
+     *
+     * @param key      Ключ содержимого или ключ с именем варианта ({@code ключ.вариант}).
+     * @param resource Ресурс с содержимым.
+     * @return Закэшированное содержимое или null, если оно слишком велико для кэша.
+     * @throws IOException Если возникает ошибка при чтении.
+     */
+    public ByteBuffer putContent(String key, Resource resource) throws IOException {
+        if (resource.contentLength() > maxEntryBytes) {
+            return null;
+        }
+        try {
+            return content.get(key, k -> read(resource)).duplicate();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Удаляет из кэша метаданные изображений (после удаления изображений).
+     *
+     * @param imageIds ID изображений.
+     */
+    public void invalidateImages(Collection<Integer> imageIds) {
+        metadata.invalidateAll(imageIds);
+    }
+
+    /**
+     * Удаляет из кэша метаданные всех изображений указанных пользователей.
+     *
+     * @param userIds ID пользователей.
+     */
+    public void invalidateUsers(Collection<Integer> userIds) {
+        Set<Integer> users = new HashSet<>(userIds);
+        metadata.asMap().values().removeIf(info -> users.contains(info.getUserId()));
+    }
+
+    /**
+     * Удаляет из кэша содержимое вместе с вариантами (после удаления из хранилища).
+     *
+     * @param blobKeys Ключи содержимого.
+     */
+    public void invalidateContent(Collection<String> blobKeys) {
+        if (blobKeys.isEmpty()) {
+            return;
+        }
+        Set<String> keys = new HashSet<>(blobKeys);
+        content.asMap().keySet().removeIf(key -> keys.contains(blobKeyOf(key)));
+    }
+
+    private static String blobKeyOf(String key) {
+        int dot = key.indexOf('.');
+        return dot < 0 ? key : key.substring(0, dot);
+    }
+
+    private static ByteBuffer read(Resource resource) {
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) resource.contentLength());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Читаем до конца файла
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
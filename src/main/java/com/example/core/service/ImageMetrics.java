@@ -0,0 +1,187 @@
+package com.example.core.service;
+
+import com.example.core.repository.ImageRepository;
+import com.example.core.repository.ImageSortField;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Метрики работы с изображениями для Micrometer.
+ * Время загрузки, скачивания и получения списков публикуется гистограммой,
+ * что позволяет считать перцентили на стороне Prometheus.
+ * Значения тегов ограничены фиксированными наборами, чтобы число временных рядов не росло
+ * от пользовательского ввода.
+ */
+@Component
+@Slf4j
+public class ImageMetrics {
+
+    /**
+     * Типы верхнего уровня из реестра IANA; остальные значения тегируются как "other".
+     */
+    private static final Set<String> TOP_LEVEL_TYPES = Set.of(
+            "application", "audio", "font", "image", "message", "model", "multipart", "text", "video");
+
+    private final MeterRegistry registry;
+
+    private final ImageRepository imageRepository;
+
+    private final Counter uploadedBytes;
+
+    private final Counter downloadedBytes;
+
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    private final AtomicLong storedCount = new AtomicLong();
+
+    public ImageMetrics(MeterRegistry registry, ImageRepository imageRepository) {
+        this.registry = registry;
+        this.imageRepository = imageRepository;
+        this.uploadedBytes = Counter.builder("image.upload.bytes")
+                .description("Объём загруженных изображений")
+                .baseUnit("bytes")
+                .register(registry);
+        this.downloadedBytes = Counter.builder("image.download.bytes")
+                .description("Объём переданных при скачивании данных")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("image.stored.bytes", storedBytes, AtomicLong::get)
+                .description("Общий размер сохранённых изображений")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("image.stored.count", storedCount, AtomicLong::get)
+                .description("Количество сохранённых изображений")
+                .register(registry);
+    }
+
+    /**
+     * Начинает замер времени операции.
+     *
+     * @return Замер, который завершается одним из методов record*.
+     */
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Завершает замер загрузки.
+     *
+     * @param sample  Замер, начатый {@link #start()}.
+     * @param mode    Способ загрузки: "single" или "batch".
+     * @param outcome Результат: "success" или "error".
+     */
+    public void recordUpload(Timer.Sample sample, String mode, String outcome) {
+        sample.stop(Timer.builder("image.upload")
+                .description("Время загрузки изображений")
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Учитывает объём сохранённых изображений.
+     *
+     * @param bytes Количество байт.
+     */
+    public void uploaded(long bytes) {
+        uploadedBytes.increment(bytes);
+    }
+
+    /**
+     * Учитывает файл, отклонённый из-за неподдерживаемого формата.
+     *
+     * @param contentType Заявленный тип содержимого (может быть null).
+     */
+    public void rejected(String contentType) {
+        registry.counter("image.upload.rejected", "type", topLevelType(contentType)).increment();
+    }
+
+    /**
+     * Завершает замер скачивания.
+     *
+     * @param sample Замер, начатый {@link #start()}.
+     * @param status HTTP-статус ответа или "error", если скачивание прервано исключением.
+     */
+    public void recordDownload(Timer.Sample sample, String status) {
+        sample.stop(Timer.builder("image.download")
+                .description("Время скачивания изображений")
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Учитывает объём переданных при скачивании данных.
+     *
+     * @param bytes Количество байт.
+     */
+    public void downloaded(long bytes) {
+        downloadedBytes.increment(bytes);
+    }
+
+    /**
+     * Завершает замер получения страницы изображений.
+     * Тег filters перечисляет заданные фильтры, например "ids+size" или "none".
+     *
+     * @param sample    Замер, начатый {@link #start()}.
+     * @param scope     Кто запрашивает список: "user" или "moderator".
+     * @param sortField Поле сортировки.
+     */
+    public void recordList(Timer.Sample sample, String scope, ImageSortField sortField,
+                           List<Integer> ids, Long minSize, Long maxSize, Date startDate, Date endDate) {
+        StringJoiner filters = new StringJoiner("+");
+        if (ids != null && !ids.isEmpty()) {
+            filters.add("ids");
+        }
+        if (minSize != null || maxSize != null) {
+            filters.add("size");
+        }
+        if (startDate != null || endDate != null) {
+            filters.add("date");
+        }
+        sample.stop(Timer.builder("image.list")
+                .description("Время получения страницы изображений")
+                .tag("scope", scope)
+                .tag("sort", sortField.getProperty())
+                .tag("filters", filters.length() == 0 ? "none" : filters.toString())
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Периодически обновляет показатели объёма хранилища.
+     * Агрегатный запрос выполняется по расписанию, а не при каждом сборе метрик.
+     */
+    @Scheduled(fixedDelayString = "${image.metrics.refresh-interval-ms:60000}")
+    public void refreshStorage() {
+        try {
+            storedBytes.set(imageRepository.sumFileSize());
+            storedCount.set(imageRepository.count());
+        } catch (DataAccessException e) {
+            log.warn("Не удалось обновить метрики хранилища: {}", e.getMessage());
+        }
+    }
+
+    private static String topLevelType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return "none";
+        }
+        int slash = contentType.indexOf('/');
+        String type = (slash < 0 ? contentType : contentType.substring(0, slash)).trim().toLowerCase(Locale.ROOT);
+        return TOP_LEVEL_TYPES.contains(type) ? type : "other";
+    }
+}
@@ -1,30 +1,59 @@
 package com.example.core.service;
 
-import com.example.core.model.Event;
+import com.example.core.dto.BulkModerationResult;
+import com.example.core.dto.DuplicateCluster;
+import com.example.core.dto.ImageDownloadInfo;
+import com.example.core.dto.ImageHashEntry;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.ImageUploadResult;
+import com.example.core.dto.UserIdentity;
+import com.example.core.dto.UserImageUsage;
 import com.example.core.model.Image;
+import com.example.core.model.ImageFormat;
 import com.example.core.model.Users;
+import com.example.core.repository.ImageCursor;
 import com.example.core.repository.ImageRepository;
+import com.example.core.repository.ImageSortField;
+import com.example.core.repository.ImageSpecifications;
 import com.example.core.repository.UsersRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.core.storage.BlobStore;
+import com.example.core.storage.StagedBlob;
+import com.example.core.web.NonBlockingFileTransfer;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Sort;
+import org.springframework.core.io.Resource;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 
 /**
@@ -41,106 +70,369 @@ public class ImageService {
     private UsersRepository usersRepository;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate; // Интеграция с RabbitMQ
+    private UserIdentityCache userIdentityCache;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private NotificationService notificationService; // Очередь уведомлений для mail-сервиса
 
-    @Value("${upload.dir}")
-    private String uploadDir;
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ThreadPoolTaskExecutor imageIngestExecutor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImageMetrics imageMetrics;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private ThreadPoolTaskExecutor blobReclaimExecutor;
+
+    @Autowired
+    private BlockedUsers blockedUsers;
+
+    @Autowired
+    private PerceptualHashIndex perceptualHashIndex;
+
+    @Autowired
+    private StorageReconciler storageReconciler;
+
+    @Autowired
+    private StorageTiering storageTiering;
+
+    @Autowired
+    private ImageDownloadCache imageDownloadCache;
+
+    @Value("${image.duplicates.enabled:true}")
+    private boolean duplicateDetection; // Вычисление перцептивного хеша при загрузке
+
+    @Value("${image.duplicates.skip-on-upload:false}")
+    private boolean skipDuplicates; // Не сохранять повторную загрузку того же или похожего изображения
+
+    @Value("${image.duplicates.max-distance:6}")
+    private int duplicateMaxDistance;
+
+    @Value("${image.rendition.max-pixels:100000000}")
+    private long maxPixels;
+
+    @Value("${image.download.non-blocking:false}")
+    private boolean nonBlockingDownloads; // Неблокирующая передача файлов без удержания потока запроса
+
+    @Value("${image.download.timeout-ms:600000}")
+    private long downloadTimeoutMs;
 
     /**
      * Загружает изображение, связывая его с пользователем по электронной почте.
+     * При включённом image.duplicates.skip-on-upload повторная загрузка того же
+     * или похожего изображения не сохраняется, а в результате указывается ID уже загруженного.
      *
      * @param file      Файл изображения, который нужно загрузить.
      * @param userEmail Электронная почта пользователя, загружающего изображение.
-     * @throws IOException Если возникает ошибка при работе с файлами.
+     * @return Результат загрузки.
+     * @throws IOException            Если возникает ошибка при работе с файлами.
+     * @throws QuotaExceededException Если загрузка превысит квоту пользователя.
      */
     @Transactional
-    public void uploadImages(MultipartFile file, String userEmail) throws IOException {
-        // Проверка допустимых форматов файлов
-        String contentType = file.getContentType();
-        if (!isValidImageFormat(contentType)) {
-            throw new IllegalArgumentException("Неподдерживаемый формат файла: " + contentType);
+    public ImageUploadResult uploadImages(MultipartFile file, String userEmail) throws IOException {
+        Timer.Sample sample = imageMetrics.start();
+        String outcome = "error";
+        try {
+            // Получаем пользователя по email и резервируем место до начала записи на диск
+            UserIdentity identity = activeUser(userEmail);
+            storageQuotaService.reserve(identity, file.getSize(), 1);
+            storageQuotaService.releaseOnRollback(identity.getId(), file.getSize(), 1);
+            Users user = usersRepository.getReferenceById(identity.getId());
+
+            Ingested ingested = ingest(file, user);
+            if (ingested.duplicateOf() != null) {
+                storageQuotaService.release(identity.getId(), file.getSize(), 1);
+                outcome = "duplicate";
+                return ImageUploadResult.duplicate(file.getOriginalFilename(), ingested.duplicateOf());
+            }
+            Image image = ingested.image();
+            publishOnCommit(List.of(ingested.staged()));
+            imageRepository.save(image);
+            renditionService.scheduleAfterCommit(image.getBlobKey(), image.getContentType());
+            indexAfterCommit(image);
+
+            // Отправка уведомления в mail-сервис
+            notificationService.uploaded(userEmail, 1, image.getFileSize());
+            imageMetrics.uploaded(image.getFileSize());
+            outcome = "success";
+            return ImageUploadResult.uploaded(image.getOriginalFileName(), image.getFileSize(), image.getChecksum());
+        } finally {
+            imageMetrics.recordUpload(sample, "single", outcome);
         }
+    }
 
-        // Получаем путь файла с расширением
-        Path filePath = Paths.get(uploadDir, file.getOriginalFilename());
-
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
+    /**
+     * Пакетная загрузка изображений одним запросом.
+     * Файлы параллельно записываются в хранилище в пуле imageIngestExecutor,
+     * после чего метаданные сохраняются одним пакетным INSERT в одной транзакции.
+     * Ошибка в одном файле не прерывает загрузку остальных.
+     * Место под все файлы резервируется заранее; место неудавшихся файлов затем освобождается.
+     *
+     * @param files     Файлы изображений, которые нужно загрузить.
+     * @param userEmail Электронная почта пользователя, загружающего изображения.
+     * @return Результат загрузки для каждого файла в порядке их передачи.
+     * @throws QuotaExceededException Если загрузка всех файлов превысит квоту пользователя.
+     */
+    public List<ImageUploadResult> uploadImagesBatch(List<MultipartFile> files, String userEmail) {
+        Timer.Sample sample = imageMetrics.start();
+        String outcome = "error";
+        try {
+            List<ImageUploadResult> results = ingestBatch(files, userEmail);
+            outcome = "success";
+            return results;
+        } finally {
+            imageMetrics.recordUpload(sample, "batch", outcome);
+        }
+    }
 
-        long fileSize = file.getSize();
+    private List<ImageUploadResult> ingestBatch(List<MultipartFile> files, String userEmail) {
+        UserIdentity identity = activeUser(userEmail);
+        long reservedBytes = 0;
+        for (MultipartFile file : files) {
+            reservedBytes += file.getSize();
+        }
+        storageQuotaService.reserve(identity, reservedBytes, files.size());
+        Users user = usersRepository.getReferenceById(identity.getId());
+
+        // Параллельная запись файлов в хранилище
+        List<CompletableFuture<Ingested>> tasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ingest(file, user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, imageIngestExecutor));
+        }
 
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, StandardOpenOption.CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024)) {
-            bis.transferTo(bos);
+        List<ImageUploadResult> results = new ArrayList<>(files.size());
+        List<Image> images = new ArrayList<>(files.size());
+        List<StagedBlob> staged = new ArrayList<>(files.size());
+        long totalSize = 0;
+        for (int i = 0; i < files.size(); i++) {
+            String fileName = files.get(i).getOriginalFilename();
+            try {
+                Ingested ingested = tasks.get(i).join();
+                if (ingested.duplicateOf() != null) {
+                    results.add(ImageUploadResult.duplicate(fileName, ingested.duplicateOf()));
+                    continue;
+                }
+                Image image = ingested.image();
+                images.add(image);
+                staged.add(ingested.staged());
+                totalSize += image.getFileSize();
+                results.add(ImageUploadResult.uploaded(fileName, image.getFileSize(), image.getChecksum()));
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Не удалось загрузить файл {}: {}", fileName, cause.getMessage());
+                results.add(ImageUploadResult.failed(fileName, cause.getMessage()));
+            }
         }
 
-        // Получаем пользователя по email
-        Users user = usersRepository.findByEmail(userEmail).orElseThrow(()
-                -> new RuntimeException(String.format("Пользователь с %s не найден!")));
+        if (!images.isEmpty()) {
+            long uploadedSize = totalSize;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    publishOnCommit(staged);
+                    imageRepository.insertAll(images);
+                    notificationService.uploaded(userEmail, images.size(), uploadedSize);
+                });
+            } catch (RuntimeException e) {
+                // Записанные файлы уже отброшены при откате транзакции
+                storageQuotaService.release(identity.getId(), reservedBytes, files.size());
+                throw e;
+            }
+            imageMetrics.uploaded(uploadedSize);
+            for (Image image : images) {
+                renditionService.schedule(image.getBlobKey(), image.getContentType());
+            }
+            index(identity.getId(), images);
+        }
+        // Освобождаем место, зарезервированное под файлы, которые не удалось загрузить
+        storageQuotaService.release(identity.getId(), reservedBytes - totalSize, files.size() - images.size());
+        return results;
+    }
 
+    /**
+     * Проверяет формат файла по сигнатуре и потоково записывает его в хранилище.
+     * Заявленный клиентом Content-Type не учитывается: первые байты читаются
+     * до записи в хранилище, и нераспознанное содержимое отклоняется, не дойдя до диска.
+     * Перцептивный хеш вычисляется по записанному временному файлу: похожее изображение,
+     * которое не нужно сохранять, отбрасывается до публикации и в хранилище не попадает.
+     * Файл записывается во временный каталог хранилища и публикуется под своим ключом
+     * только при фиксации транзакции (см. {@link #publishOnCommit}).
+     *
+     * @param file Файл изображения.
+     * @param user Пользователь, загружающий изображение.
+     * @return Несохранённая сущность с метаданными изображения и записанный файл или ID уже загруженного такого же изображения.
+     * @throws IOException              Если возникает ошибка при записи в хранилище.
+     * @throws IllegalArgumentException Если содержимое не является изображением поддерживаемого формата.
+     */
+    private Ingested ingest(MultipartFile file, Users user) throws IOException {
+        ImageFormat format;
+        StagedBlob blob;
+        try (InputStream is = file.getInputStream()) {
+            byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+            int length = is.readNBytes(header, 0, header.length);
+            Optional<ImageFormat> detected = ImageFormat.detect(header, length);
+            if (detected.isEmpty()) {
+                imageMetrics.rejected(file.getContentType());
+                throw new IllegalArgumentException("Неподдерживаемый формат файла: " + file.getOriginalFilename());
+            }
+            format = detected.get();
+
+            // Тело запроса читается один раз: хранилище считает размер и хеш на лету
+            blob = blobStore.stage(new SequenceInputStream(new ByteArrayInputStream(header, 0, length), is));
+        }
+        if (skipDuplicates && blobStore.exists(blob.key())) {
+            // Такое содержимое уже хранится: если оно принадлежит этому же пользователю, вторая запись не нужна
+            Integer existing = imageRepository.findIdByUserIdAndChecksum(user.getId(), blob.checksum());
+            if (existing != null) {
+                blobStore.discard(blob);
+                return new Ingested(null, null, existing);
+            }
+        }
+        Long perceptualHash = perceptualHash(blob, file.getOriginalFilename());
+        if (perceptualHash != null && skipDuplicates) {
+            List<Integer> similar = perceptualHashIndex.findSimilar(perceptualHash, duplicateMaxDistance, user.getId());
+            if (!similar.isEmpty()) {
+                blobStore.discard(blob);
+                return new Ingested(null, null, similar.get(0));
+            }
+        }
 
         // Сохранение информации о загружаемом изображении
         Image image = new Image();
         image.setOriginalFileName(file.getOriginalFilename());
         image.setName(file.getOriginalFilename());
-        image.setFileSize(fileSize);
-        image.setContentType(contentType);
-        image.setBytes(file.getBytes());
+        image.setFileSize(blob.size());
+        image.setChecksum(blob.checksum());
+        image.setBlobKey(blob.key());
+        image.setPerceptualHash(perceptualHash);
+        image.setContentType(format.getContentType());
         image.setUploadDate(new Date());
         image.setUser(user); // Устанавливаем связь с объектом Users
-
-        imageRepository.save(image);
-
-        // Отправка уведомления в mail-сервис
-        sendMailNotification(userEmail, fileSize);
+        return new Ingested(image, blob, null);
     }
 
     /**
-     * Проверяет, является ли указанный формат изображения допустимым.
+     * Публикует записанные файлы перед фиксацией текущей транзакции и отбрасывает их при откате.
+     * Ошибка публикации откатывает транзакцию, поэтому зафиксированная запись изображения
+     * всегда ссылается на опубликованный файл; файл, опубликованный перед сбоем фиксации,
+     * удаляет {@link StorageReconciler}.
      *
-     * @param contentType Тип контента изображения.
-     * @return true, если формат допустим, иначе false.
+     * @param staged Записанные файлы.
      */
-
-    private boolean isValidImageFormat(String contentType) {
-        List<String> validFormats = Arrays.asList("image/jpeg", "image/png", "image/gif", "image/webp");
-        return validFormats.contains(contentType);
+    private void publishOnCommit(List<StagedBlob> staged) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                for (StagedBlob blob : staged) {
+                    try {
+                        blobStore.publish(blob);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Не удалось сохранить файл " + blob.key(), e);
+                    }
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    staged.forEach(blobStore::discard);
+                }
+            }
+        });
     }
 
     /**
-     * Отправляет уведомление на почту пользователя о загрузке изображений.
+     * Вычисляет перцептивный хеш по временному файлу, уже записанному в хранилище,
+     * не перечитывая тело запроса.
      *
-     * @param userEmail Адрес электронной почты пользователя.
-     * @param totalSize Общий размер загруженных изображений в байтах.
+     * @param blob     Записанное, ещё не опубликованное содержимое.
+     * @param fileName Имя загружаемого файла (для журнала).
+     * @return Хеш или null, если поиск похожих изображений отключён или формат не декодируется.
      */
-    private void sendMailNotification(String userEmail, Long totalSize) {
-        try {
-            Event event = new Event(userEmail, "Уведомление о загрузке изображений. Общий объём: " + totalSize + " байт.");
+    private Long perceptualHash(StagedBlob blob, String fileName) {
+        if (!duplicateDetection) {
+            return null;
+        }
+        try (InputStream is = Files.newInputStream(blob.file())) {
+            OptionalLong hash = PerceptualHash.compute(is, maxPixels);
+            return hash.isPresent() ? hash.getAsLong() : null;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Не удалось вычислить перцептивный хеш {}: {}", fileName, e.getMessage());
+            return null;
+        }
+    }
 
-            // Сериализация объекта в JSON
-            byte[] messageBody = objectMapper.writeValueAsBytes(event);
+    /**
+     * Добавляет изображение в индекс похожих изображений после фиксации транзакции.
+     */
+    private void indexAfterCommit(Image image) {
+        if (image.getPerceptualHash() == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                perceptualHashIndex.add(image.getId(), image.getUser().getId(), image.getPerceptualHash());
+            }
+        });
+    }
 
-            // Установка заголовков
-            MessageProperties messageProperties = new MessageProperties();
-            messageProperties.setContentType("application/json");
+    /**
+     * Добавляет в индекс похожих изображений изображения, сохранённые пакетной вставкой:
+     * их ID в объекты не записываются, поэтому читаются из базы по ключам содержимого.
+     */
+    private void index(Integer userId, List<Image> images) {
+        List<String> blobKeys = images.stream()
+                .filter(image -> image.getPerceptualHash() != null)
+                .map(Image::getBlobKey)
+                .distinct()
+                .toList();
+        if (blobKeys.isEmpty()) {
+            return;
+        }
+        for (ImageHashEntry entry : imageRepository.findHashes(userId, blobKeys)) {
+            perceptualHashIndex.add(entry.getImageId(), entry.getUserId(), entry.getHash());
+        }
+    }
 
-            // Создание сообщения
-            Message message = new Message(messageBody, messageProperties);
+    /**
+     * Группы похожих изображений для модераторов.
+     *
+     * @param userId      ID пользователя, среди изображений которого ищутся похожие (null — среди всех).
+     * @param maxDistance Наибольшее расстояние Хэмминга между перцептивными хешами (null — image.duplicates.max-distance).
+     * @param limit       Наибольшее количество групп.
+     * @return Группы похожих изображений, начиная с самых больших.
+     */
+    public List<DuplicateCluster> findDuplicates(Integer userId, Integer maxDistance, int limit) {
+        return perceptualHashIndex.clusters(maxDistance != null ? maxDistance : duplicateMaxDistance, userId, limit);
+    }
 
-            // Отправка сообщения
-            rabbitTemplate.send("mail", message);
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Произошла ошибка %s", e.getMessage()));
-        }
+    /**
+     * Результат приёма файла: новое изображение с записанным файлом или ID уже загруженного такого же изображения.
+     */
+    private record Ingested(Image image, StagedBlob staged, Integer duplicateOf) {
     }
 
     /**
-     * Получает список изображений, отфильтрованных по указанным параметрам.
+     * Получает страницу изображений, отфильтрованных по указанным параметрам.
+     * Заданные фильтры применяются одновременно; без фильтров возвращаются все изображения пользователя.
      *
      * @param userEmail Адрес электронной почты пользователя, которому принадлежат изображения.
      * @param ids       Список ID изображений для фильтрации (необязательно).
@@ -148,12 +440,14 @@ public class ImageService {
      * @param maxSize   Максимальный размер изображений для фильтрации (необязательно).
      * @param startDate Начальная дата для фильтрации изображений (необязательно).
      * @param endDate   Конечная дата для фильтрации изображений (необязательно).
-     * @param sortBy    Поле, по которому требуется сортировать результаты (по умолчанию "uploadDate").
+     * @param sortBy    Поле, по которому требуется сортировать результаты ("uploadDate" или "fileSize").
      * @param sortOrder Порядок сортировки результатов ("ASC" или "DESC", по умолчанию "ASC").
-     * @return Список отфильтрованных изображений.
+     * @param cursor    Курсор следующей страницы из предыдущего ответа (необязательно).
+     * @param pageSize  Размер страницы (необязательно).
+     * @return Страница отфильтрованных изображений.
      */
     @Transactional(readOnly = true)
-    public List<Image> getFilteredImages(
+    public ImagePage getFilteredImages(
             String userEmail, // Добавляем email пользователя
             List<Integer> ids,
             Long minSize,
@@ -161,87 +455,420 @@ public class ImageService {
             Date startDate,
             Date endDate,
             String sortBy,
-            String sortOrder) {
+            String sortOrder,
+            String cursor,
+            Integer pageSize) {
 
-        Sort sort = sortOrder.equalsIgnoreCase("DESC") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        ImageSortField sortField = ImageSortField.fromProperty(sortBy);
+        boolean descending = sortOrder.equalsIgnoreCase("DESC");
+        ImageCursor after = ImageCursor.parse(cursor, sortField, descending);
 
+        Timer.Sample sample = imageMetrics.start();
         // Получаем текущего пользователя
-        Users currentUser = usersRepository.findByEmail(userEmail).orElseThrow();
-        if (currentUser == null) {
-            throw new RuntimeException("Пользователь не найден");
-        }
-
-        // Фильтруем изображения по пользователю
-        if (ids != null && !ids.isEmpty()) {
-            return imageRepository.findByIdInAndUser(ids, currentUser, sort);
-        } else if (minSize != null && maxSize != null) {
-            return imageRepository.findByFileSizeBetweenAndUser(minSize, maxSize, currentUser, sort);
-        } else if (startDate != null && endDate != null) {
-            return imageRepository.findByUploadDateBetweenAndUser(startDate, endDate, currentUser, sort);
-        }
-
-        // Если нет параметров фильтрации, возвращаем пустой список
-        return Collections.emptyList();
+        UserIdentity currentUser = userIdentityCache.get(userEmail);
+
+        // Все заданные фильтры объединяются в один запрос по изображениям пользователя
+        Specification<Image> filter = ImageSpecifications.matching(
+                currentUser.getId(), ids, minSize, maxSize, startDate, endDate);
+        ImagePage page = imageRepository.findPage(filter, sortField, descending, after, pageSize);
+        imageMetrics.recordList(sample, "user", sortField, ids, minSize, maxSize, startDate, endDate);
+        return page;
     }
 
     /**
      * Скачивает изображение по его ID и отправляет уведомление на почту.
+     * Поддерживает условные запросы по ETag ({@code If-None-Match}) и
+     * частичную загрузку одного диапазона байт ({@code Range}, {@code If-Range}).
      *
      * @param imageId   ID изображения для скачивания.
      * @param userEmail Адрес электронной почты пользователя,
      *                  запрашивающего скачивание.
+     * @param request   HttpServletRequest с заголовками условного и частичного запроса.
      * @param response  HttpServletResponse для записи данных изображения.
      * @throws IOException Если возникает ошибка во время скачивания.
      */
-    public void downloadImage(Integer imageId, String userEmail, HttpServletResponse response) throws IOException {
-        Image image = getImageById(imageId);
+    public void downloadImage(Integer imageId, String userEmail,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        downloadImage(imageId, null, null, userEmail, request, response);
+    }
+
+    /**
+     * Скачивает изображение, при необходимости перекодированное: формат выбирается по заголовку Accept
+     * (JPEG или PNG), ширина и качество JPEG — по параметрам. Оригинал отдаётся, если его тип
+     * принимается клиентом и параметры не заданы. Перекодированная копия строится один раз
+     * и хранится рядом с оригиналом.
+     *
+     * @param imageId   ID изображения для скачивания.
+     * @param width     Желаемая ширина в пикселях (null — ширина оригинала).
+     * @param quality   Качество JPEG от 1 до 100 (null — по умолчанию).
+     * @param userEmail Адрес электронной почты пользователя, запрашивающего скачивание.
+     * @param request   HttpServletRequest с заголовками Accept, условного и частичного запроса.
+     * @param response  HttpServletResponse для записи данных изображения.
+     * @throws IOException              Если возникает ошибка во время скачивания.
+     * @throws IllegalArgumentException Если ширина или качество вне допустимого диапазона.
+     */
+    public void downloadImage(Integer imageId, Integer width, Integer quality, String userEmail,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Timer.Sample sample = imageMetrics.start();
+        String status = "error";
+        try {
+            sendImage(imageId, width, quality, userEmail, request, response);
+            status = String.valueOf(response.getStatus());
+        } finally {
+            imageMetrics.recordDownload(sample, status);
+        }
+    }
 
-        // Проверяем, принадлежит ли изображение пользователю
-        if (!Objects.equals(image.getUser().getEmail(), userEmail)) {
+    private void sendImage(Integer imageId, Integer width, Integer quality, String userEmail,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Метаданные, владелец и содержимое небольших файлов берутся из кэшей, если они там есть
+        ImageDownloadInfo image = imageDownloadCache.info(imageId);
+        if (!isOwner(image.getUserId(), userEmail)) {
             response.sendError(HttpServletResponse.SC_FORBIDDEN); // Отправляем 403 Forbidden
             return;
         }
 
+        Optional<TranscodeTarget> target = renditionService.negotiate(
+                image.getContentType(), request.getHeader(HttpHeaders.ACCEPT), width, quality);
+        if (renditionService.isTranscodeEnabled()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        // Содержимое адресуется хешем, поэтому контрольная сумма (с именем варианта) служит сильным ETag
+        String etag = etagOf(image, target);
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // Содержимое читается из кэша или с того уровня хранения, где оно сейчас лежит
+        String cacheKey = target.map(t -> image.getBlobKey() + "." + t.variant()).orElse(image.getBlobKey());
+        ByteBuffer cached = imageDownloadCache.getContent(cacheKey);
+        Resource content = null;
+        if (cached == null) {
+            Optional<Resource> transcoded = target.flatMap(t -> renditionService.transcode(image.getBlobKey(), t));
+            if (target.isPresent() && transcoded.isEmpty()) {
+                // Копию построить не удалось: отдаём оригинал
+                target = Optional.empty();
+                cacheKey = image.getBlobKey();
+                etag = etagOf(image, target);
+            }
+            content = transcoded.isPresent() ? transcoded.get() : blobStore.get(image.getBlobKey());
+            cached = imageDownloadCache.putContent(cacheKey, content);
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        long length = cached != null ? cached.remaining() : content.contentLength();
+        long start = 0;
+        long end = length - 1;
+
+        // Диапазон учитывается, только если If-Range отсутствует или совпадает с текущим ETag
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean partial = false;
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                // Несколько диапазонов не поддерживаются: в этом случае отдаём файл целиком
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    partial = true;
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
         // Настраиваем заголовки для скачивания
-        response.setContentType(image.getContentType());
-        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + image.getOriginalFileName() + "\"");
-        response.setContentLength(image.getBytes().length);
+        String contentType = target.map(TranscodeTarget::contentType).orElse(image.getContentType());
+        String fileName = target.map(t -> t.fileName(image.getOriginalFileName())).orElse(image.getOriginalFileName());
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        if (partial) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        boolean fromStart = start == 0;
+        transfer(cached, content, start, count, request, response, () -> {
+            imageMetrics.downloaded(count);
+            // Уведомление и обращение к содержимому учитываем один раз на скачивание,
+            // а не на каждый догружаемый диапазон
+            if (fromStart) {
+                storageTiering.recordDownload(image.getImageId(), image.getBlobKey());
+                notificationService.downloaded(userEmail, image.getFileSize(), image.getOriginalFileName());
+            }
+        });
+    }
 
-        // Записываем байты изображения в выходной поток
-        response.getOutputStream().write(image.getBytes());
-        response.getOutputStream().flush();
+    private static String etagOf(ImageDownloadInfo image, Optional<TranscodeTarget> target) {
+        return "\"" + image.getChecksum() + target.map(t -> "-" + t.variant()).orElse("") + "\"";
+    }
 
-        // Отправляем уведомление на почту
-        sendMailNotification(userEmail, image.getFileSize(), image.getOriginalFileName());
+    /**
+     * Удаляет изображение пользователя и освобождает занятое им место в квоте.
+     * Содержимое удаляется из хранилища после фиксации транзакции,
+     * если на него не ссылаются другие изображения.
+     *
+     * @param imageId   ID изображения.
+     * @param userEmail Адрес электронной почты владельца изображения.
+     * @return true, если изображение удалено; false, если оно принадлежит другому пользователю.
+     * @throws RuntimeException Если изображение не найдено.
+     */
+    @Transactional
+    public boolean deleteImage(Integer imageId, String userEmail) {
+        Image image = getImageById(imageId);
+        if (!isOwner(image, userEmail)) {
+            return false;
+        }
+        imageRepository.delete(image);
+        storageQuotaService.onDeleted(image.getUser().getId(), image.getFileSize(), 1);
+
+        String blobKey = image.getBlobKey();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                imageDownloadCache.invalidateImages(List.of(imageId));
+                perceptualHashIndex.remove(imageId);
+                storageReconciler.reclaim(List.of(blobKey));
+            }
+        });
+        return true;
     }
 
     /**
-     * Отправляет уведомление пользователю по электронной почте о
-     * скачивании изображения.
+     * Удаляет все изображения указанных пользователей набором запросов, не загружая сущности.
+     * Счётчики занятого места уменьшаются на размер удалённых изображений в той же транзакции,
+     * как при удалении одного изображения: пересчёт по таблице images стёр бы место,
+     * зарезервированное загрузками, начатыми до блокировки. Содержимое, на которое
+     * больше не ссылаются изображения, удаляется из хранилища в фоне после фиксации.
      *
-     * @param userEmail        Адрес электронной почты пользователя.
-     * @param fileSize         Размер файла изображения в байтах.
-     * @param originalFileName Оригинальное имя файла изображения.
-     * @throws RuntimeException Если возникает ошибка во время отправки уведомления.
+     * @param userIds ID пользователей.
+     * @return Количество пользователей, удалённых изображений и их общий размер.
      */
-    private void sendMailNotification(String userEmail, Long fileSize, String originalFileName) {
-        try {
-            Event event = new Event(userEmail, "Изображение скачано: " + originalFileName + " (" + fileSize + " байт).");
+    @Transactional
+    public BulkModerationResult deleteImagesOfUsers(Collection<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return new BulkModerationResult(0, 0, 0);
+        }
+        List<UserImageUsage> usage = imageRepository.findUsageByUserIdIn(userIds);
+        long bytes = usage.stream().mapToLong(UserImageUsage::getBytes).sum();
+        List<String> blobKeys = imageRepository.findBlobKeysByUserIdIn(userIds);
+        int deleted = imageRepository.deleteByUserIdIn(userIds);
+        for (UserImageUsage user : usage) {
+            storageQuotaService.onDeleted(user.getUserId(), user.getBytes(), (int) user.getCount());
+        }
 
-            // Сериализация объекта в JSON
-            byte[] messageBody = objectMapper.writeValueAsBytes(event);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                imageDownloadCache.invalidateUsers(userIds);
+                perceptualHashIndex.removeUsers(userIds);
+                blobReclaimExecutor.execute(() -> storageReconciler.reclaim(blobKeys));
+            }
+        });
+        log.info("Удалено {} изображений ({} байт) пользователей {}", deleted, bytes, userIds);
+        return new BulkModerationResult(userIds.size(), deleted, bytes);
+    }
 
-            // Установка заголовков
-            MessageProperties messageProperties = new MessageProperties();
-            messageProperties.setContentType("application/json");
+    /**
+     * Отдаёт уменьшенную копию изображения указанного размера.
+     * Копия не меняется, пока существует изображение, поэтому кэшируется клиентом на год;
+     * если её ещё нет, она строится при запросе в пуле построения копий. Если очередь пула заполнена,
+     * отвечает 503 с заголовком Retry-After.
+     *
+     * @param imageId   ID изображения.
+     * @param size      Имя размера копии ("thumb" или "preview").
+     * @param userEmail Адрес электронной почты пользователя, запрашивающего копию.
+     * @param request   HttpServletRequest с заголовком If-None-Match.
+     * @param response  HttpServletResponse для записи копии.
+     * @throws IOException              Если возникает ошибка при передаче.
+     * @throws IllegalArgumentException Если размер копии не поддерживается.
+     */
+    public void downloadRendition(Integer imageId, String size, String userEmail,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        RenditionSize renditionSize = RenditionSize.fromVariant(size);
+        ImageDownloadInfo image = imageDownloadCache.info(imageId);
+        if (!isOwner(image.getUserId(), userEmail)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
 
-            // Создание сообщения
-            Message message = new Message(messageBody, messageProperties);
+        String etag = "\"" + image.getChecksum() + "-" + renditionSize.getVariant() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
-            // Отправка сообщения в RabbitMQ
-            rabbitTemplate.send("mail", message);
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Произошла ошибка: %s", e.getMessage()));
+        String cacheKey = image.getBlobKey() + "." + renditionSize.getVariant();
+        ByteBuffer cached = imageDownloadCache.getContent(cacheKey);
+        Resource rendition = null;
+        if (cached == null) {
+            Optional<Resource> built;
+            try {
+                built = renditionService.get(image.getBlobKey(), image.getContentType(), renditionSize);
+            } catch (RenditionBusyException e) {
+                // Копия ещё не построена, а пул занят: клиент повторит запрос позже
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            if (built.isEmpty()) {
+                // Формат оригинала не удаётся прочитать средствами ImageIO
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            rendition = built.get();
+            cached = imageDownloadCache.putContent(cacheKey, rendition);
+        }
+        long length = cached != null ? cached.remaining() : rendition.contentLength();
+        response.setContentType(renditionService.renditionContentType(image.getContentType()));
+        response.setContentLengthLong(length);
+        transfer(cached, rendition, 0, length, request, response, () -> {
+        });
+    }
+
+    /**
+     * Проверяет, принадлежит ли изображение пользователю.
+     * ID владельца доступен без загрузки пользователя из базы.
+     *
+     * @param image     Изображение.
+     * @param userEmail Адрес электронной почты пользователя.
+     * @return true, если пользователь существует и владеет изображением.
+     * @throws UserBlockedException Если пользователь заблокирован.
+     */
+    private boolean isOwner(Image image, String userEmail) {
+        return isOwner(image.getUser().getId(), userEmail);
+    }
+
+    private boolean isOwner(Integer ownerId, String userEmail) {
+        Optional<UserIdentity> user = userIdentityCache.find(userEmail);
+        if (user.isPresent() && blockedUsers.isBlocked(user.get().getId())) {
+            throw new UserBlockedException("Пользователь " + userEmail + " заблокирован");
+        }
+        return user.isPresent() && Objects.equals(ownerId, user.get().getId());
+    }
+
+    /**
+     * Возвращает сведения о незаблокированном пользователе без обращения к базе данных
+     * (если пользователь уже есть в кэше).
+     *
+     * @param userEmail Адрес электронной почты пользователя.
+     * @return Сведения о пользователе.
+     * @throws RuntimeException     Если пользователь не найден.
+     * @throws UserBlockedException Если пользователь заблокирован.
+     */
+    private UserIdentity activeUser(String userEmail) {
+        UserIdentity identity = userIdentityCache.get(userEmail);
+        if (blockedUsers.isBlocked(identity.getId())) {
+            throw new UserBlockedException("Пользователь " + userEmail + " заблокирован");
+        }
+        return identity;
+    }
+
+    /**
+     * Проверяет, совпадает ли значение заголовка If-None-Match с ETag изображения.
+     *
+     * @param ifNoneMatch Значение заголовка If-None-Match (может быть null).
+     * @param etag        ETag изображения.
+     * @return true, если клиент уже имеет актуальную версию изображения.
+     */
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Передаёт диапазон содержимого в ответ. Закэшированное содержимое (не больше
+     * image.cache.max-entry-bytes) пишется сразу из буфера. В неблокирующем режиме файл
+     * передаётся асинхронно, и поток запроса освобождается сразу после начала передачи.
+     *
+     * @param cached     Закэшированное содержимое или null.
+     * @param content    Ресурс с содержимым; используется, если cached равен null.
+     * @param start      Смещение первого передаваемого байта.
+     * @param count      Количество передаваемых байт.
+     * @param request    HttpServletRequest; для асинхронной передачи должен её поддерживать.
+     * @param response   HttpServletResponse с уже выставленными статусом и заголовками.
+     * @param onComplete Действие после успешной передачи всех байт.
+     * @throws IOException Если возникает ошибка при передаче или при открытии файла.
+     */
+    private void transfer(ByteBuffer cached, Resource content, long start, long count,
+                          HttpServletRequest request, HttpServletResponse response,
+                          Runnable onComplete) throws IOException {
+        if (cached != null) {
+            OutputStream out = response.getOutputStream();
+            cached.position((int) start).limit((int) (start + count));
+            Channels.newChannel(out).write(cached);
+            out.flush();
+            onComplete.run();
+            return;
+        }
+        if (nonBlockingDownloads && content.isFile() && request.isAsyncSupported()) {
+            NonBlockingFileTransfer.start(request, response, content.getFile().toPath(),
+                    start, count, downloadTimeoutMs, onComplete);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        transfer(content, start, count, out);
+        out.flush();
+        onComplete.run();
+    }
+
+    /**
+     * Передаёт указанный диапазон содержимого в выходной поток.
+     * Файл читается через {@link FileChannel#transferTo} начиная с нужного смещения, без пропуска
+     * байт через поток. Поток ответа сервлета не является файловым каналом, поэтому данные всё же
+     * копируются фрагментами через промежуточный буфер JDK, а не передаются ядром напрямую (sendfile).
+     *
+     * @param content Ресурс с содержимым изображения.
+     * @param start   Смещение первого передаваемого байта.
+     * @param count   Количество передаваемых байт.
+     * @param out     Выходной поток ответа.
+     * @throws IOException  Если возникает ошибка при передаче.
+     * @throws EOFException Если файл оказался короче запрошенного диапазона (например, был усечён во время передачи).
+     */
+    private void transfer(Resource content, long start, long count, OutputStream out) throws IOException {
+        if (content.isFile()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(content.getFile().toPath(), StandardOpenOption.READ)) {
+                long position = start;
+                long remaining = count;
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        throw new EOFException("Файл закончился раньше ожидаемого: не передано " + remaining + " байт");
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+            return;
+        }
+        try (InputStream is = content.getInputStream()) {
+            StreamUtils.copyRange(is, out, start, start + count - 1);
         }
     }
 
@@ -0,0 +1,76 @@
+package com.example.core.service;
+
+import com.example.core.storage.BlobStore;
+import com.example.core.storage.StoredBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.util.List;
+
+/**
+ * Переносит содержимое изображений, сохранённых до появления {@link BlobStore},
+ * из колонки {@code images.bytes} в хранилище.
+ * Каждое изображение переносится в отдельной транзакции, содержимое читается потоково.
+ */
+@Component
+@Slf4j
+public class LegacyImageMigration implements ApplicationRunner {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Integer> ids;
+        try {
+            ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM images WHERE blob_key IS NULL AND bytes IS NOT NULL", Integer.class);
+        } catch (DataAccessException e) {
+            // Колонки bytes нет: база создана уже без неё, переносить нечего
+            return;
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        log.info("Перенос {} изображений из images.bytes в хранилище", ids.size());
+        for (Integer id : ids) {
+            transactionTemplate.executeWithoutResult(status -> migrate(id));
+        }
+        // В PostgreSQL колонка bytes имеет тип oid: освободить сами large objects можно через vacuumlo
+        log.info("Перенос изображений завершён");
+    }
+
+    private void migrate(Integer id) {
+        StoredBlob blob = jdbcTemplate.query("SELECT bytes FROM images WHERE id = ?", rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            Blob lob = rs.getBlob(1);
+            try (InputStream is = lob.getBinaryStream()) {
+                return blobStore.put(is);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, id);
+        if (blob != null) {
+            jdbcTemplate.update("UPDATE images SET blob_key = ?, checksum = ?, bytes = NULL WHERE id = ?",
+                    blob.key(), blob.checksum(), id);
+        }
+    }
+}
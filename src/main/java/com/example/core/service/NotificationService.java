@@ -0,0 +1,75 @@
+package com.example.core.service;
+
+import com.example.core.model.NotificationKind;
+import com.example.core.model.OutboxMessage;
+import com.example.core.repository.OutboxMessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * Сервис постановки уведомлений в очередь на отправку в mail-сервис.
+ * Уведомление сохраняется в таблицу outbox_messages в текущей транзакции,
+ * а в RabbitMQ его отправляет {@link OutboxRelay}. Поэтому поток запроса
+ * не ждёт брокер, а сбой брокера не откатывает основную операцию.
+ */
+@Service
+public class NotificationService {
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    /**
+     * Ставит в очередь произвольное уведомление. Такие уведомления отправляются как есть.
+     *
+     * @param email       Адрес электронной почты получателя.
+     * @param description Текст уведомления.
+     */
+    @Transactional
+    public void enqueue(String email, String description) {
+        save(email, NotificationKind.MESSAGE, 0, 0, description);
+    }
+
+    /**
+     * Ставит в очередь уведомление о загрузке изображений.
+     * Может быть объединено с другими уведомлениями пользователя в сводку.
+     *
+     * @param email     Адрес электронной почты пользователя.
+     * @param count     Количество загруженных изображений.
+     * @param totalSize Общий размер загруженных изображений в байтах.
+     */
+    @Transactional
+    public void uploaded(String email, int count, long totalSize) {
+        save(email, NotificationKind.UPLOAD, count, totalSize,
+                "Уведомление о загрузке изображений. Общий объём: " + totalSize + " байт.");
+    }
+
+    /**
+     * Ставит в очередь уведомление о скачивании изображения.
+     * Может быть объединено с другими уведомлениями пользователя в сводку.
+     *
+     * @param email            Адрес электронной почты пользователя.
+     * @param fileSize         Размер файла изображения в байтах.
+     * @param originalFileName Оригинальное имя файла изображения.
+     */
+    @Transactional
+    public void downloaded(String email, long fileSize, String originalFileName) {
+        save(email, NotificationKind.DOWNLOAD, 1, fileSize,
+                "Изображение скачано: " + originalFileName + " (" + fileSize + " байт).");
+    }
+
+    private void save(String email, NotificationKind kind, int count, long bytes, String description) {
+        Date now = new Date();
+        OutboxMessage message = new OutboxMessage();
+        message.setEmail(email);
+        message.setKind(kind);
+        message.setItemCount(count);
+        message.setBytes(bytes);
+        message.setDescription(description);
+        message.setCreatedAt(now);
+        message.setNextAttemptAt(now);
+        outboxMessageRepository.save(message);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.core.service;
+
+import com.example.core.model.Event;
+import com.example.core.model.NotificationKind;
+import com.example.core.model.OutboxMessage;
+import com.example.core.repository.OutboxMessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая отправка уведомлений из таблицы outbox_messages в RabbitMQ.
+ * Уведомления отправляются пачками; строка удаляется только после подтверждения
+ * брокера (publisher confirm). При ошибке попытка повторяется с экспоненциальной задержкой.
+ * Загрузки и скачивания пользователя за окно notification.coalesce.window-ms
+ * отправляются одной сводкой.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private static final String ROUTING_KEY = "mail";
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${notification.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notification.relay.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${notification.relay.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${notification.relay.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${notification.coalesce.window-ms:30000}")
+    private long coalesceWindowMs;
+
+    @Value("${notification.coalesce.max-batch:100}")
+    private int coalesceMaxBatch;
+
+    /**
+     * Отправляет готовые уведомления, пока очередь не опустеет.
+     */
+    @Scheduled(fixedDelayString = "${notification.relay.interval-ms:1000}")
+    public void relay() {
+        Integer processed;
+        do {
+            processed = transactionTemplate.execute(status -> relayBatch());
+        } while (processed != null && processed == batchSize);
+    }
+
+    /**
+     * Отправляет одну пачку уведомлений и ожидает подтверждения брокера.
+     * Загрузки и скачивания одного пользователя объединяются в одну сводку.
+     *
+     * @return Количество обработанных (отправленных или отложенных) уведомлений.
+     */
+    private int relayBatch() {
+        Date now = new Date();
+        List<OutboxMessage> batch = outboxMessageRepository
+                .findByNextAttemptAtLessThanEqualOrderByIdAsc(now, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Outgoing> outgoing = coalesce(batch, now);
+
+        // Время от начала публикации пачки до получения всех подтверждений брокера
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        // Публикуем всю пачку, не дожидаясь подтверждения каждого сообщения
+        Map<Outgoing, CorrelationData> published = new LinkedHashMap<>();
+        List<OutboxMessage> failed = new ArrayList<>();
+        for (Outgoing item : outgoing) {
+            try {
+                CorrelationData correlation = new CorrelationData(item.messageId());
+                rabbitTemplate.send(rabbitTemplate.getExchange(), ROUTING_KEY, toAmqpMessage(item), correlation);
+                published.put(item, correlation);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось отправить уведомление {}: {}", item.messageId(), e.getMessage());
+                failed.addAll(item.rows());
+            }
+        }
+
+        // Удаляем подтверждённые брокером, остальные откладываем
+        List<OutboxMessage> confirmed = new ArrayList<>();
+        int confirmedMessages = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        for (Map.Entry<Outgoing, CorrelationData> entry : published.entrySet()) {
+            if (isConfirmed(entry.getValue(), deadline)) {
+                confirmed.addAll(entry.getKey().rows());
+                confirmedMessages++;
+            } else {
+                failed.addAll(entry.getKey().rows());
+            }
+        }
+        sample.stop(Timer.builder("notification.publish")
+                .description("Время публикации пачки уведомлений до подтверждения брокером")
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        meterRegistry.counter("notification.messages", "result", "confirmed").increment(confirmedMessages);
+        meterRegistry.counter("notification.messages", "result", "failed").increment(outgoing.size() - confirmedMessages);
+        meterRegistry.counter("notification.outbox.rows", "result", "confirmed").increment(confirmed.size());
+        meterRegistry.counter("notification.outbox.rows", "result", "retried").increment(failed.size());
+        outboxMessageRepository.deleteAllInBatch(confirmed);
+        for (OutboxMessage message : failed) {
+            scheduleRetry(message, now);
+        }
+        return confirmed.size() + failed.size();
+    }
+
+    /**
+     * Формирует исходящие сообщения из пачки уведомлений.
+     * Произвольные сообщения отправляются по одному. Загрузки и скачивания
+     * группируются по пользователю; группа отправляется одной сводкой, когда
+     * её самое старое уведомление старше окна объединения или в ней набралось
+     * notification.coalesce.max-batch уведомлений (значение не должно превышать
+     * notification.relay.batch-size). Иначе группа ждёт следующего прохода.
+     */
+    private List<Outgoing> coalesce(List<OutboxMessage> batch, Date now) {
+        List<Outgoing> outgoing = new ArrayList<>();
+        Map<String, List<OutboxMessage>> byUser = new LinkedHashMap<>();
+        for (OutboxMessage message : batch) {
+            if (message.getKind() == NotificationKind.MESSAGE) {
+                outgoing.add(new Outgoing(List.of(message), new Event(message.getEmail(), message.getDescription())));
+            } else {
+                byUser.computeIfAbsent(message.getEmail(), email -> new ArrayList<>()).add(message);
+            }
+        }
+
+        long windowStart = now.getTime() - coalesceWindowMs;
+        for (List<OutboxMessage> group : byUser.values()) {
+            boolean windowClosed = group.get(0).getCreatedAt().getTime() <= windowStart;
+            if (!windowClosed && group.size() < coalesceMaxBatch) {
+                continue;
+            }
+            for (int from = 0; from < group.size(); from += coalesceMaxBatch) {
+                List<OutboxMessage> rows = group.subList(from, Math.min(group.size(), from + coalesceMaxBatch));
+                outgoing.add(new Outgoing(rows, toEvent(rows)));
+            }
+        }
+        return outgoing;
+    }
+
+    /**
+     * Собирает событие для группы уведомлений одного пользователя.
+     * Одиночное уведомление отправляется с исходным текстом.
+     */
+    private Event toEvent(List<OutboxMessage> rows) {
+        OutboxMessage first = rows.get(0);
+        if (rows.size() == 1) {
+            return new Event(first.getEmail(), first.getDescription());
+        }
+        int uploadCount = 0;
+        long uploadBytes = 0;
+        int downloadCount = 0;
+        long downloadBytes = 0;
+        for (OutboxMessage row : rows) {
+            if (row.getKind() == NotificationKind.UPLOAD) {
+                uploadCount += row.getItemCount();
+                uploadBytes += row.getBytes();
+            } else {
+                downloadCount += row.getItemCount();
+                downloadBytes += row.getBytes();
+            }
+        }
+        String description = String.format("Сводка: загружено изображений - %d (%d байт), скачано изображений - %d (%d байт).",
+                uploadCount, uploadBytes, downloadCount, downloadBytes);
+        return new Event(first.getEmail(), description, uploadCount, uploadBytes, downloadCount, downloadBytes);
+    }
+
+    /**
+     * Ожидает подтверждения публикации до указанного момента.
+     *
+     * @return true, если брокер подтвердил сообщение и не вернул его как недоставляемое.
+     */
+    private boolean isConfirmed(CorrelationData correlation, long deadline) {
+        try {
+            long timeout = Math.max(0, deadline - System.nanoTime());
+            CorrelationData.Confirm confirm = correlation.getFuture().get(timeout, TimeUnit.NANOSECONDS);
+            return confirm.isAck() && correlation.getReturned() == null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Нет подтверждения для уведомления {}: {}", correlation.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Откладывает следующую попытку отправки с экспоненциальной задержкой.
+     */
+    private void scheduleRetry(OutboxMessage message, Date now) {
+        int attempts = message.getAttempts() + 1;
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+        message.setAttempts(attempts);
+        message.setNextAttemptAt(new Date(now.getTime() + backoff));
+        outboxMessageRepository.save(message);
+    }
+
+    private Message toAmqpMessage(Outgoing item) {
+        try {
+            // Сериализация объекта в JSON
+            byte[] messageBody = objectMapper.writeValueAsBytes(item.event());
+
+            // Установка заголовков; messageId позволяет получателю отбросить повторную доставку
+            MessageProperties messageProperties = new MessageProperties();
+            messageProperties.setContentType("application/json");
+            messageProperties.setMessageId(item.messageId());
+
+            return new Message(messageBody, messageProperties);
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Произошла ошибка %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Исходящее сообщение и уведомления из outbox_messages, которые оно покрывает.
+     *
+     * @param rows  Уведомления, удаляемые после подтверждения сообщения брокером.
+     * @param event Отправляемое событие.
+     */
+    private record Outgoing(List<OutboxMessage> rows, Event event) {
+
+        String messageId() {
+            return String.valueOf(rows.get(0).getId());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.core.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.OptionalLong;
+
+/**
+ * Перцептивный хеш изображения (dHash, 64 бита).
+ * Изображение приводится к оттенкам серого размером 9x8, и каждый бит хеша показывает,
+ * светлее ли пиксель своего правого соседа. Повторное сжатие, изменение размера и
+ * небольшая цветокоррекция меняют лишь несколько бит, поэтому похожесть изображений
+ * оценивается расстоянием Хэмминга между хешами.
+ */
+public final class PerceptualHash {
+
+    private static final int WIDTH = 9;
+
+    private static final int HEIGHT = 8;
+
+    /**
+     * Минимальная сторона прореженного при декодировании изображения: с запасом
+     * относительно 9x8, чтобы прореживание не давало заметного наложения спектров.
+     */
+    private static final int DECODE_MIN_DIMENSION = 64;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Вычисляет хеш изображения. Большие изображения декодируются с прореживанием.
+     *
+     * @param in        Поток с содержимым изображения. Закрывать его должен вызывающий код.
+     * @param maxPixels Наибольшее количество пикселей изображения, которое допускается декодировать.
+     * @return Хеш или пустой OptionalLong, если формат не читается {@link ImageIO} или изображение слишком велико.
+     * @throws IOException Если возникает ошибка при чтении.
+     */
+    public static OptionalLong compute(InputStream in, long maxPixels) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+            if (readers == null || !readers.hasNext()) {
+                return OptionalLong.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    return OptionalLong.empty();
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = Math.max(1, Math.min(width, height) / DECODE_MIN_DIMENSION);
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return OptionalLong.of(of(reader.read(0, param)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @param image Изображение.
+     * @return Хеш изображения.
+     */
+    public static long of(BufferedImage image) {
+        BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            // Прозрачные области считаются белыми, как при построении JPEG-копий
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, WIDTH, HEIGHT, null);
+        } finally {
+            g.dispose();
+        }
+
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        gray.getRaster().getDataElements(0, 0, WIDTH, HEIGHT, pixels);
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int left = pixels[y * WIDTH + x] & 0xFF;
+                int right = pixels[y * WIDTH + x + 1] & 0xFF;
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param a Первый хеш.
+     * @param b Второй хеш.
+     * @return Расстояние Хэмминга: количество различающихся бит (от 0 до 64).
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
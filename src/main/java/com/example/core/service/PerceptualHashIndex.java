@@ -0,0 +1,305 @@
+package com.example.core.service;
+
+import com.example.core.dto.DuplicateCluster;
+import com.example.core.dto.ImageHashEntry;
+import com.example.core.repository.ImageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс перцептивных хешей изображений в памяти для поиска похожих изображений
+ * (multi-index hashing). 64-битный хеш делится на {@link #CHUNKS} частей по 16 бит, и для каждой
+ * части ведётся своя таблица. Если хеши отличаются не больше чем на r бит, то хотя бы одна
+ * их часть отличается не больше чем на r / 4 бит, поэтому поиск проверяет только корзины
+ * с такими значениями частей, а не весь индекс.
+ * Индекс заполняется из базы данных при старте и обновляется при загрузке и удалении изображений.
+ */
+@Component
+@Slf4j
+public class PerceptualHashIndex {
+
+    private static final int LOAD_BATCH_SIZE = 10000;
+
+    private static final int CHUNKS = 4;
+
+    private static final int CHUNK_BITS = Long.SIZE / CHUNKS;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final ImageRepository imageRepository;
+
+    private final boolean enabled;
+
+    private final Timer lookupTimer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Entry> byImage = new HashMap<>();
+
+    /**
+     * Таблицы по частям хеша: tables[часть][значение части] — изображения с таким значением; корзины создаются по мере заполнения.
+     */
+    @SuppressWarnings("unchecked")
+    private final List<Entry>[][] tables = new List[CHUNKS][1 << CHUNK_BITS];
+
+    public PerceptualHashIndex(ImageRepository imageRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${image.duplicates.enabled:true}") boolean enabled) {
+        this.imageRepository = imageRepository;
+        this.enabled = enabled;
+        this.lookupTimer = meterRegistry.timer("image.duplicates.lookup");
+        meterRegistry.gauge("image.duplicates.indexed", this, PerceptualHashIndex::size);
+    }
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    /**
+     * Заполняет индекс хешами всех изображений пачками по {@link #LOAD_BATCH_SIZE}.
+     */
+    private void load() {
+        int afterId = 0;
+        List<ImageHashEntry> batch;
+        do {
+            batch = imageRepository.findHashesAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (ImageHashEntry entry : batch) {
+                add(entry.getImageId(), entry.getUserId(), entry.getHash());
+                afterId = entry.getImageId();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        log.info("Индекс похожих изображений: {} хешей", size());
+    }
+
+    /**
+     * Добавляет изображение в индекс. Повторное добавление того же изображения заменяет его хеш.
+     *
+     * @param imageId ID изображения.
+     * @param userId  ID владельца изображения.
+     * @param hash    Перцептивный хеш изображения.
+     */
+    public void add(Integer imageId, Integer userId, long hash) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(imageId);
+            Entry entry = new Entry(imageId, userId, hash);
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                List<Entry> bucket = tables[chunk][chunkOf(hash, chunk)];
+                if (bucket == null) {
+                    bucket = new ArrayList<>(2);
+                    tables[chunk][chunkOf(hash, chunk)] = bucket;
+                }
+                bucket.add(entry);
+            }
+            byImage.put(imageId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет изображение из индекса.
+     *
+     * @param imageId ID изображения.
+     */
+    public void remove(Integer imageId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(imageId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет из индекса все изображения указанных пользователей.
+     *
+     * @param userIds ID пользователей.
+     */
+    public void removeUsers(Collection<Integer> userIds) {
+        Set<Integer> users = new HashSet<>(userIds);
+        lock.writeLock().lock();
+        try {
+            Iterator<Entry> it = byImage.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (users.contains(entry.userId)) {
+                    unlink(entry);
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Находит изображения, хеш которых отличается от заданного не больше чем на maxDistance бит.
+     *
+     * @param hash        Перцептивный хеш.
+     * @param maxDistance Наибольшее расстояние Хэмминга.
+     * @param userId      ID владельца, среди изображений которого ведётся поиск (null — среди всех).
+     * @return ID найденных изображений в порядке возрастания расстояния.
+     */
+    public List<Integer> findSimilar(long hash, int maxDistance, Integer userId) {
+        long started = System.nanoTime();
+        List<Entry> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            search(hash, maxDistance, userId, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+        found.sort(Comparator.comparingInt((Entry entry) -> PerceptualHash.distance(hash, entry.hash))
+                .thenComparing(entry -> entry.imageId));
+        lookupTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return found.stream().map(entry -> entry.imageId).toList();
+    }
+
+    /**
+     * Группирует похожие изображения: изображения попадают в одну группу, если их можно
+     * соединить цепочкой пар с расстоянием не больше maxDistance.
+     *
+     * @param maxDistance Наибольшее расстояние Хэмминга между соседними изображениями группы.
+     * @param userId      ID владельца, изображения которого группируются (null — все изображения).
+     * @param limit       Наибольшее количество групп в ответе.
+     * @return Группы из двух и более изображений, начиная с самых больших.
+     */
+    public List<DuplicateCluster> clusters(int maxDistance, Integer userId, int limit) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        Map<Integer, Entry> entries = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Entry entry : byImage.values()) {
+                if (userId != null && !userId.equals(entry.userId)) {
+                    continue;
+                }
+                entries.put(entry.imageId, entry);
+                List<Entry> near = new ArrayList<>();
+                search(entry.hash, maxDistance, userId, near);
+                for (Entry other : near) {
+                    union(parent, entry.imageId, other.imageId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Integer, List<Entry>> groups = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            groups.computeIfAbsent(find(parent, entry.imageId), key -> new ArrayList<>()).add(entry);
+        }
+        return groups.values().stream()
+                .filter(group -> group.size() > 1)
+                .sorted(Comparator.comparingInt((List<Entry> group) -> group.size()).reversed())
+                .limit(limit)
+                .map(group -> new DuplicateCluster(
+                        group.stream().map(entry -> entry.userId).distinct().sorted().toList(),
+                        group.stream().map(entry -> entry.imageId).sorted().toList()))
+                .toList();
+    }
+
+    /**
+     * @return Количество изображений в индексе.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byImage.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(Integer imageId) {
+        Entry entry = byImage.remove(imageId);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunkOf(entry.hash, chunk);
+            List<Entry> bucket = tables[chunk][value];
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                tables[chunk][value] = null;
+            }
+        }
+    }
+
+    private void search(long hash, int maxDistance, Integer userId, List<Entry> found) {
+        Set<Integer> seen = new HashSet<>();
+        int chunkDistance = maxDistance / CHUNKS;
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int value = chunkOf(hash, chunk);
+            // Перебираем все значения части, отличающиеся от value не больше чем на chunkDistance бит
+            probe(value, chunkDistance, 0, tables[chunk], hash, maxDistance, userId, seen, found);
+        }
+    }
+
+    private void probe(int value, int flips, int fromBit, List<Entry>[] table, long hash, int maxDistance,
+                       Integer userId, Set<Integer> seen, List<Entry> found) {
+        List<Entry> bucket = table[value];
+        if (bucket != null) {
+            for (Entry entry : bucket) {
+                if ((userId == null || userId.equals(entry.userId))
+                        && PerceptualHash.distance(hash, entry.hash) <= maxDistance
+                        && seen.add(entry.imageId)) {
+                    found.add(entry);
+                }
+            }
+        }
+        if (flips == 0) {
+            return;
+        }
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            probe(value ^ (1 << bit), flips - 1, bit + 1, table, hash, maxDistance, userId, seen, found);
+        }
+    }
+
+    private static int chunkOf(long hash, int chunk) {
+        return (int) (hash >>> (chunk * CHUNK_BITS)) & CHUNK_MASK;
+    }
+
+    private static void union(Map<Integer, Integer> parent, Integer a, Integer b) {
+        Integer rootA = find(parent, a);
+        Integer rootB = find(parent, b);
+        if (!rootA.equals(rootB)) {
+            parent.put(rootA, rootB);
+        }
+    }
+
+    private static Integer find(Map<Integer, Integer> parent, Integer id) {
+        Integer root = id;
+        Integer next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        // Сжатие пути
+        Integer current = id;
+        while (!current.equals(root)) {
+            next = parent.get(current);
+            parent.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private record Entry(Integer imageId, Integer userId, long hash) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.core.service;
+
+/**
+ * Исключение, выбрасываемое, если загрузка превысит квоту пользователя.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
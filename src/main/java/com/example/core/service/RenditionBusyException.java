@@ -0,0 +1,11 @@
+package com.example.core.service;
+
+/**
+ * Исключение, выбрасываемое, если копию изображения нужно построить, а очередь пула построения копий заполнена.
+ */
+public class RenditionBusyException extends RuntimeException {
+
+    public RenditionBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.core.service;
+
+import com.example.core.storage.BlobNotFoundException;
+import com.example.core.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Построение и выдача уменьшенных копий (рендишенов) изображений.
+ * Копии строятся средствами {@link ImageIO} в пуле imageRenditionExecutor после фиксации загрузки
+ * и сохраняются в хранилище рядом с оригиналом как варианты содержимого.
+ * Если копии ещё нет (очередь была переполнена или изображение загружено раньше),
+ * она строится при первом запросе. Одновременные запросы одного изображения
+ * ожидают одну и ту же задачу.
+ * Так же, один раз на вариант, строятся перекодированные копии для скачивания в другом формате,
+ * ширине или качестве ({@link TranscodeTarget}).
+ */
+@Service
+@Slf4j
+public class RenditionService {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ThreadPoolTaskExecutor imageRenditionExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${image.rendition.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${image.rendition.max-pixels:100000000}")
+    private long maxPixels;
+
+    @Value("${image.rendition.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${image.transcode.enabled:true}")
+    private boolean transcodeEnabled;
+
+    @Value("${image.transcode.widths:160,320,480,640,800,1024,1280,1600,1920,2560}")
+    private int[] transcodeWidths;
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Ставит построение копий в очередь после фиксации текущей транзакции,
+     * чтобы не строить копии для загрузки, которая будет откачена.
+     * Вне транзакции задача ставится сразу.
+     *
+     * @param blobKey     Ключ содержимого оригинала.
+     * @param contentType Тип содержимого оригинала.
+     */
+    public void scheduleAfterCommit(String blobKey, String contentType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule(blobKey, contentType);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule(blobKey, contentType);
+            }
+        });
+    }
+
+    /**
+     * Ставит построение копий в очередь. При переполнении очереди задача отбрасывается.
+     *
+     * @param blobKey     Ключ содержимого оригинала.
+     * @param contentType Тип содержимого оригинала.
+     */
+    public void schedule(String blobKey, String contentType) {
+        try {
+            submit(blobKey, contentType);
+        } catch (RejectedExecutionException e) {
+            log.debug("Очередь построения превью переполнена, {} будет обработано по запросу", blobKey);
+        }
+    }
+
+    /**
+     * Возвращает копию изображения, при необходимости дожидаясь её построения.
+     *
+     * @param blobKey     Ключ содержимого оригинала.
+     * @param contentType Тип содержимого оригинала.
+     * @param size        Размер копии.
+     * @return Ресурс с копией или пустой Optional, если формат оригинала не удаётся прочитать.
+     * @throws RenditionBusyException Если копии нет, а очередь построения заполнена.
+     */
+    public Optional<Resource> get(String blobKey, String contentType, RenditionSize size) {
+        return await(blobKey, size.getVariant(), blobKey, () -> renderAll(blobKey, contentType));
+    }
+
+    /**
+     * Выбирает, в каком виде отдать изображение при скачивании (см. {@link TranscodeTarget#negotiate}).
+     * Изображения, которые ImageIO не умеет читать, всегда отдаются как есть.
+     *
+     * @param contentType Тип содержимого оригинала.
+     * @param accept      Значение заголовка Accept (может быть null).
+     * @param width       Запрошенная ширина (может быть null).
+     * @param quality     Запрошенное качество JPEG от 1 до 100 (может быть null).
+     * @return Параметры перекодирования или пустой Optional, если отдаётся оригинал.
+     * @throws IllegalArgumentException Если ширина или качество вне допустимого диапазона.
+     */
+    public Optional<TranscodeTarget> negotiate(String contentType, String accept, Integer width, Integer quality) {
+        if (!transcodeEnabled) {
+            return Optional.empty();
+        }
+        Optional<TranscodeTarget> target = TranscodeTarget.negotiate(contentType, accept, width, quality,
+                transcodeWidths, Math.round(jpegQuality * 100));
+        if (target.isPresent() && (contentType == null || !ImageIO.getImageReadersByMIMEType(contentType).hasNext())) {
+            return Optional.empty();
+        }
+        return target;
+    }
+
+    /**
+     * @return true, если ответ на скачивание зависит от заголовка Accept.
+     */
+    public boolean isTranscodeEnabled() {
+        return transcodeEnabled;
+    }
+
+    /**
+     * Возвращает перекодированную копию изображения, при необходимости дожидаясь её построения.
+     * Копия строится один раз и хранится рядом с оригиналом.
+     *
+     * @param blobKey Ключ содержимого оригинала.
+     * @param target  Параметры перекодирования.
+     * @return Ресурс с копией или пустой Optional, если копию построить не удалось или очередь построения заполнена.
+     */
+    public Optional<Resource> transcode(String blobKey, TranscodeTarget target) {
+        String variant = target.variant();
+        try {
+            return await(blobKey, variant, blobKey + "." + variant, () -> render(blobKey, target));
+        } catch (RenditionBusyException e) {
+            log.debug("Очередь построения копий переполнена, {} отдаётся без перекодирования", blobKey);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Возвращает вариант содержимого, если его нет — строит его в пуле, ожидая не дольше image.rendition.timeout-ms.
+     *
+     * Копия никогда не строится в потоке запроса: иначе поток одновременных промахов обходил бы
+     * ограничение пула и мог исчерпать память.
+     *
+     * @param taskKey Ключ задачи построения: одновременные запросы с одним ключом ждут одну задачу.
+     * @throws RenditionBusyException Если очередь пула заполнена.
+     */
+    private Optional<Resource> await(String blobKey, String variant, String taskKey, Runnable render) {
+        if (!blobStore.variantExists(blobKey, variant)) {
+            try {
+                submit(taskKey, render).get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                throw new RenditionBusyException("Очередь построения копий переполнена");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Не удалось построить копию {}: {}", taskKey, e.getMessage());
+                return Optional.empty();
+            }
+        }
+        try {
+            return Optional.of(blobStore.getVariant(blobKey, variant));
+        } catch (BlobNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param contentType Тип содержимого оригинала.
+     * @return Тип содержимого копии: PNG для форматов с прозрачностью, иначе JPEG.
+     */
+    public String renditionContentType(String contentType) {
+        return "image/" + formatOf(contentType);
+    }
+
+    private CompletableFuture<Void> submit(String blobKey, String contentType) {
+        return submit(blobKey, () -> renderAll(blobKey, contentType));
+    }
+
+    private CompletableFuture<Void> submit(String taskKey, Runnable render) {
+        CompletableFuture<Void> task = inFlight.computeIfAbsent(taskKey, key ->
+                CompletableFuture.runAsync(render, imageRenditionExecutor));
+        task.whenComplete((result, error) -> inFlight.remove(taskKey, task));
+        return task;
+    }
+
+    /**
+     * Строит все недостающие копии за одно декодирование оригинала.
+     */
+    private void renderAll(String blobKey, String contentType) {
+        Set<RenditionSize> missing = EnumSet.noneOf(RenditionSize.class);
+        int largest = 0;
+        for (RenditionSize size : RenditionSize.values()) {
+            if (!blobStore.variantExists(blobKey, size.getVariant())) {
+                missing.add(size);
+                largest = Math.max(largest, size.getMaxDimension());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            BufferedImage source = decode(blobStore.get(blobKey), largest, false);
+            if (source == null) {
+                outcome = "unsupported";
+                return;
+            }
+            String format = formatOf(contentType);
+            for (RenditionSize size : missing) {
+                BufferedImage scaled = scale(source, size.getMaxDimension(), format.equals("png"));
+                blobStore.putVariant(blobKey, size.getVariant(), encode(scaled, format, jpegQuality));
+            }
+            outcome = "success";
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            sample.stop(meterRegistry.timer("image.rendition", "outcome", outcome));
+        }
+    }
+
+    /**
+     * Строит перекодированную копию изображения.
+     * Копия без заданной ширины не шире наибольшей из image.transcode.widths: иначе смена формата
+     * или качества у изображения на пределе image.rendition.max-pixels декодировала бы его целиком.
+     */
+    private void render(String blobKey, TranscodeTarget target) {
+        if (blobStore.variantExists(blobKey, target.variant())) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            int width = target.width() == 0 ? transcodeWidths[transcodeWidths.length - 1] : target.width();
+            BufferedImage source = decode(blobStore.get(blobKey), width, true);
+            if (source == null) {
+                outcome = "unsupported";
+                return;
+            }
+            boolean alpha = target.format().equals("png");
+            BufferedImage scaled = resize(source, Math.min(1.0, (double) width / source.getWidth()), alpha);
+            blobStore.putVariant(blobKey, target.variant(), encode(scaled, target.format(), target.quality() / 100f));
+            outcome = "success";
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            sample.stop(meterRegistry.timer("image.transcode", "format", target.format(), "outcome", outcome));
+        }
+    }
+
+    /**
+     * Декодирует изображение с прореживанием: большие оригиналы читаются сразу
+     * в уменьшенном виде, но не меньше чем вдвое больше самой крупной копии.
+     *
+     * @param largest   Наибольший размер копии в пикселях.
+     * @param widthOnly true, если largest ограничивает ширину, а не большую сторону.
+     * @return Изображение или null, если формат не поддерживается или изображение слишком велико.
+     */
+    private BufferedImage decode(Resource resource, int largest, boolean widthOnly) throws IOException {
+        try (InputStream is = resource.getInputStream();
+             ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("Изображение {}x{} слишком велико для построения превью", width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int side = widthOnly ? width : Math.max(width, height);
+                int factor = (int) Math.max(1, side / (2L * largest));
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Уменьшает изображение последовательными уменьшениями вдвое с билинейной интерполяцией,
+     * что даёт качество, близкое к бикубическому, при меньших затратах.
+     */
+    private static BufferedImage scale(BufferedImage source, int maxDimension, boolean alpha) {
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        return resize(source, ratio, alpha);
+    }
+
+    /**
+     * Уменьшает изображение в ratio раз (ratio не больше 1) и приводит его к RGB или ARGB.
+     * Изображение того же размера, которое не нужно избавлять от прозрачности, возвращается без копирования.
+     */
+    private static BufferedImage resize(BufferedImage source, double ratio, boolean alpha) {
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        if (targetWidth == source.getWidth() && targetHeight == source.getHeight()
+                && (alpha || !source.getColorModel().hasAlpha())) {
+            return source;
+        }
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            int width = Math.max(targetWidth, current.getWidth() / 2);
+            int height = Math.max(targetHeight, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!alpha) {
+                    // У JPEG нет прозрачности: прозрачные области заливаются белым
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, width, height);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, String format, float quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (format.equals("png")) {
+            ImageIO.write(image, format, out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static String formatOf(String contentType) {
+        return "image/png".equals(contentType) || "image/gif".equals(contentType) ? "png" : "jpeg";
+    }
+}
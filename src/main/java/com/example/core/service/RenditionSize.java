@@ -0,0 +1,57 @@
+package com.example.core.service;
+
+/**
+ * Размеры уменьшенных копий (рендишенов) изображения.
+ * Изображение вписывается в квадрат со стороной maxDimension с сохранением пропорций
+ * и никогда не увеличивается.
+ */
+public enum RenditionSize {
+    /**
+     * Миниатюра для сетки изображений.
+     */
+    THUMB("thumb", 160),
+
+    /**
+     * Превью среднего размера.
+     */
+    PREVIEW("preview", 800);
+
+    private final String variant;
+
+    private final int maxDimension;
+
+    RenditionSize(String variant, int maxDimension) {
+        this.variant = variant;
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * @return Имя варианта в хранилище и в адресе запроса.
+     */
+    public String getVariant() {
+        return variant;
+    }
+
+    /**
+     * @return Максимальный размер большей стороны в пикселях.
+     */
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Находит размер по имени варианта.
+     *
+     * @param variant Имя варианта ("thumb" или "preview").
+     * @return Размер рендишена.
+     * @throws IllegalArgumentException Если такого размера нет.
+     */
+    public static RenditionSize fromVariant(String variant) {
+        for (RenditionSize size : values()) {
+            if (size.variant.equals(variant)) {
+                return size;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный размер превью: " + variant);
+    }
+}
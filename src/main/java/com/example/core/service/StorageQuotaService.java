@@ -0,0 +1,202 @@
+package com.example.core.service;
+
+import com.example.core.dto.StorageUsage;
+import com.example.core.dto.UserIdentity;
+import com.example.core.model.Roles;
+import com.example.core.model.UserStorageUsage;
+import com.example.core.repository.ImageRepository;
+import com.example.core.repository.UserStorageUsageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Сервис квот хранилища.
+ * Занятое место учитывается счётчиками в таблице user_storage_usage: место резервируется
+ * одним условным UPDATE до записи файла и освобождается при удалении изображения
+ * или неудачной загрузке. Квота задаётся для роли и может быть переопределена для пользователя.
+ */
+@Service
+@Slf4j
+public class StorageQuotaService {
+
+    @Autowired
+    private UserStorageUsageRepository usageRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.quota.user.max-bytes:1GB}")
+    private DataSize userMaxBytes;
+
+    @Value("${storage.quota.user.max-images:10000}")
+    private int userMaxImages;
+
+    @Value("${storage.quota.moderator.max-bytes:10GB}")
+    private DataSize moderatorMaxBytes;
+
+    @Value("${storage.quota.moderator.max-images:100000}")
+    private int moderatorMaxImages;
+
+    private TransactionTemplate requiresNew;
+
+    @PostConstruct
+    void init() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Резервирует место под загрузку в отдельной короткой транзакции,
+     * чтобы строка счётчиков не оставалась заблокированной на время записи файла.
+     *
+     * @param user  Пользователь, загружающий изображения.
+     * @param bytes Объём загрузки в байтах.
+     * @param count Количество загружаемых изображений.
+     * @throws QuotaExceededException Если загрузка превысит квоту пользователя.
+     */
+    public void reserve(UserIdentity user, long bytes, int count) {
+        Integer updated = requiresNew.execute(status -> usageRepository.reserve(
+                user.getId(), bytes, count, maxBytes(user.getRole()), maxImages(user.getRole())));
+        if ((updated == null || updated == 0) && createUsageIfAbsent(user.getId())) {
+            updated = requiresNew.execute(status -> usageRepository.reserve(
+                    user.getId(), bytes, count, maxBytes(user.getRole()), maxImages(user.getRole())));
+        }
+        if (updated == null || updated == 0) {
+            throw new QuotaExceededException("Превышена квота хранилища пользователя " + user.getEmail());
+        }
+    }
+
+    /**
+     * Освобождает зарезервированное место в отдельной транзакции.
+     *
+     * @param userId ID пользователя.
+     * @param bytes  Объём в байтах.
+     * @param count  Количество изображений.
+     */
+    public void release(Integer userId, long bytes, int count) {
+        if (bytes == 0 && count == 0) {
+            return;
+        }
+        requiresNew.executeWithoutResult(status -> usageRepository.release(userId, bytes, count));
+    }
+
+    /**
+     * Освобождает зарезервированное место, если текущая транзакция будет откачена.
+     *
+     * @param userId ID пользователя.
+     * @param bytes  Объём в байтах.
+     * @param count  Количество изображений.
+     */
+    public void releaseOnRollback(Integer userId, long bytes, int count) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(userId, bytes, count);
+                }
+            }
+        });
+    }
+
+    /**
+     * Уменьшает счётчики при удалении изображений в текущей транзакции,
+     * атомарно с удалением строк из таблицы images.
+     *
+     * @param userId ID пользователя.
+     * @param bytes  Объём удалённых изображений в байтах.
+     * @param count  Количество удалённых изображений.
+     */
+    @Transactional
+    public void onDeleted(Integer userId, long bytes, int count) {
+        usageRepository.release(userId, bytes, count);
+    }
+
+    /**
+     * Создаёт пустые счётчики для нового пользователя.
+     *
+     * @param userId ID пользователя.
+     */
+    @Transactional
+    public void initialize(Integer userId) {
+        usageRepository.save(new UserStorageUsage(userId, 0, 0, null, null));
+    }
+
+    /**
+     * Возвращает занятое место и действующие квоты пользователя.
+     * Счётчики читаются по первичному ключу, таблица images не просматривается.
+     *
+     * @param userId ID пользователя.
+     * @param role   Роль пользователя.
+     * @return Занятое место и квоты.
+     */
+    public StorageUsage getUsage(Integer userId, Roles role) {
+        createUsageIfAbsent(userId);
+        UserStorageUsage usage = usageRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+        return new StorageUsage(userId, usage.getBytesUsed(), usage.getImageCount(),
+                usage.getMaxBytes() != null ? usage.getMaxBytes() : maxBytes(role),
+                usage.getMaxImages() != null ? usage.getMaxImages() : maxImages(role));
+    }
+
+    /**
+     * Задаёт индивидуальную квоту пользователя. Значение null возвращает квоту роли.
+     *
+     * @param userId    ID пользователя.
+     * @param maxBytes  Квота на объём в байтах (необязательно).
+     * @param maxImages Квота на количество изображений (необязательно).
+     */
+    public void setQuota(Integer userId, Long maxBytes, Integer maxImages) {
+        createUsageIfAbsent(userId);
+        requiresNew.executeWithoutResult(status -> {
+            UserStorageUsage usage = usageRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+            usage.setMaxBytes(maxBytes);
+            usage.setMaxImages(maxImages);
+        });
+    }
+
+    /**
+     * Создаёт счётчики пользователя, зарегистрированного до появления квот.
+     * Только в этом случае занятое место однократно вычисляется по таблице images.
+     *
+     * @return true, если счётчики были созданы сейчас.
+     */
+    private boolean createUsageIfAbsent(Integer userId) {
+        if (usageRepository.existsById(userId)) {
+            return false;
+        }
+        try {
+            requiresNew.executeWithoutResult(status -> usageRepository.save(new UserStorageUsage(userId,
+                    imageRepository.sumFileSizeByUserId(userId),
+                    (int) imageRepository.countByUserId(userId),
+                    null, null)));
+            log.info("Созданы счётчики занятого места для пользователя {}", userId);
+        } catch (DataIntegrityViolationException e) {
+            // Счётчики параллельно создал другой запрос
+        }
+        return true;
+    }
+
+    private long maxBytes(Roles role) {
+        return role == Roles.MODERATOR ? moderatorMaxBytes.toBytes() : userMaxBytes.toBytes();
+    }
+
+    private int maxImages(Roles role) {
+        return role == Roles.MODERATOR ? moderatorMaxImages : userMaxImages;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.core.service;
+
+import com.example.core.dto.ImageBlobRef;
+import com.example.core.repository.ImageRepository;
+import com.example.core.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сверка хранилища с базой данных небольшими порциями в фоне, без остановки приложения:
+ * <ul>
+ *     <li>удаляет содержимое, на которое не ссылается ни одно изображение (например, записанное загрузкой,
+ *     которая затем была откачена или прервана сбоем после публикации);</li>
+ *     <li>удаляет временные файлы прерванных записей;</li>
+ *     <li>удаляет записи изображений, содержимого которых нет в хранилище, и уменьшает занятое место на их размер.</li>
+ * </ul>
+ * За один проход просматриваются storage.gc.shards-per-run из 256 каталогов хранилища и
+ * storage.gc.rows-per-run изображений; следующий проход продолжает с места остановки.
+ * Содержимое и временные файлы, изменённые позже storage.gc.grace-period, не удаляются:
+ * они могут принадлежать загрузке, транзакция которой ещё не зафиксирована.
+ */
+@Service
+@Slf4j
+public class StorageReconciler {
+
+    /**
+     * Количество каталогов хранилища: по первому байту ключа.
+     */
+    private static final int SHARDS = 256;
+
+    /**
+     * Количество ключей содержимого в одном запросе проверки ссылок.
+     */
+    private static final int REFERENCE_BATCH_SIZE = 500;
+
+    /**
+     * Размер пачки, начиная с которого отсутствие содержимого у всех изображений считается
+     * признаком недоступного хранилища, а не потерянных файлов.
+     */
+    private static final int MIN_SUSPICIOUS_BATCH = 10;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private PerceptualHashIndex perceptualHashIndex;
+
+    @Autowired
+    private ImageDownloadCache imageDownloadCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${storage.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.gc.grace-period:1h}")
+    private Duration gracePeriod;
+
+    @Value("${storage.gc.shards-per-run:16}")
+    private int shardsPerRun;
+
+    @Value("${storage.gc.rows-per-run:1000}")
+    private int rowsPerRun;
+
+    /**
+     * Следующий просматриваемый каталог хранилища.
+     */
+    private int nextShard;
+
+    /**
+     * ID изображения, после которого продолжается проверка записей.
+     */
+    private int lastImageId;
+
+    /**
+     * Очередной проход сверки.
+     */
+    @Scheduled(fixedDelayString = "${storage.gc.interval-ms:60000}",
+            initialDelayString = "${storage.gc.interval-ms:60000}")
+    public synchronized void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        try {
+            int purged = blobStore.purgeStaging(cutoff);
+            count("staging", purged);
+
+            List<String> keys = new ArrayList<>();
+            for (int i = 0; i < shardsPerRun; i++) {
+                keys.addAll(blobStore.listKeys(HexFormat.of().toHexDigits((byte) nextShard)));
+                nextShard = (nextShard + 1) % SHARDS;
+            }
+            reclaim(keys, cutoff);
+        } catch (IOException e) {
+            log.warn("Не удалось просмотреть хранилище: {}", e.getMessage());
+        }
+        removeDanglingRows();
+    }
+
+    /**
+     * Удаляет из хранилища содержимое, на которое не ссылается ни одно изображение
+     * и которое не изменялось в течение storage.gc.grace-period.
+     * Ссылки проверяются пачками по {@link #REFERENCE_BATCH_SIZE} ключей.
+     *
+     * @param blobKeys Ключи содержимого.
+     * @return Количество удалённых файлов.
+     */
+    public int reclaim(List<String> blobKeys) {
+        return reclaim(blobKeys, Instant.now().minus(gracePeriod));
+    }
+
+    private int reclaim(List<String> blobKeys, Instant cutoff) {
+        List<String> reclaimed = new ArrayList<>();
+        for (int from = 0; from < blobKeys.size(); from += REFERENCE_BATCH_SIZE) {
+            List<String> batch = blobKeys.subList(from, Math.min(from + REFERENCE_BATCH_SIZE, blobKeys.size()));
+            Set<String> referenced = imageRepository.findReferencedBlobKeys(batch);
+            for (String blobKey : batch) {
+                if (referenced.contains(blobKey)) {
+                    continue;
+                }
+                try {
+                    // Время изменения проверяется после запроса ссылок: загрузка такого же содержимого обновляет его до фиксации
+                    if (blobStore.deleteIfUnmodifiedSince(blobKey, cutoff)) {
+                        reclaimed.add(blobKey);
+                    }
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить содержимое {}: {}", blobKey, e.getMessage());
+                }
+            }
+        }
+        imageDownloadCache.invalidateContent(reclaimed);
+        count("blob", reclaimed.size());
+        if (!reclaimed.isEmpty()) {
+            log.info("Освобождено содержимое {} из {} файлов", reclaimed.size(), blobKeys.size());
+        }
+        return reclaimed.size();
+    }
+
+    /**
+     * Проверяет очередную пачку изображений и удаляет записи, содержимого которых нет в хранилище.
+     */
+    private void removeDanglingRows() {
+        List<ImageBlobRef> refs = imageRepository.findBlobRefsAfter(lastImageId, PageRequest.of(0, rowsPerRun));
+        lastImageId = refs.size() < rowsPerRun ? 0 : refs.get(refs.size() - 1).getImageId();
+
+        List<Integer> imageIds = new ArrayList<>();
+        Map<Integer, long[]> released = new LinkedHashMap<>();
+        for (ImageBlobRef ref : refs) {
+            if (!blobStore.exists(ref.getBlobKey())) {
+                imageIds.add(ref.getImageId());
+                long[] usage = released.computeIfAbsent(ref.getUserId(), id -> new long[2]);
+                usage[0] += ref.getFileSize() == null ? 0 : ref.getFileSize();
+                usage[1]++;
+            }
+        }
+        if (imageIds.isEmpty()) {
+            return;
+        }
+        if (imageIds.size() == refs.size() && refs.size() >= MIN_SUSPICIOUS_BATCH) {
+            // Нет содержимого ни у одного изображения пачки: скорее всего, хранилище не смонтировано
+            log.error("Содержимое всех {} проверенных изображений не найдено в хранилище, записи не удаляются", refs.size());
+            return;
+        }
+        // Счётчики уменьшаются на размер удалённых строк, а не пересчитываются по таблице images:
+        // пересчёт стёр бы место, зарезервированное ещё не зафиксированными загрузками
+        transactionTemplate.executeWithoutResult(status -> {
+            imageRepository.deleteAllByIdInBatch(imageIds);
+            released.forEach((userId, usage) -> storageQuotaService.onDeleted(userId, usage[0], (int) usage[1]));
+        });
+        imageDownloadCache.invalidateImages(imageIds);
+        imageIds.forEach(perceptualHashIndex::remove);
+        count("row", imageIds.size());
+        log.warn("Удалено {} изображений без содержимого в хранилище: {}", imageIds.size(), imageIds);
+    }
+
+    private void count(String kind, int amount) {
+        if (amount > 0) {
+            meterRegistry.counter("storage.gc", "kind", kind).increment(amount);
+        }
+    }
+}
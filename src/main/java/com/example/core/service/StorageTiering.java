@@ -0,0 +1,209 @@
+package com.example.core.service;
+
+import com.example.core.dto.ImageAccessCount;
+import com.example.core.repository.ImageRepository;
+import com.example.core.storage.BlobStore;
+import com.example.core.storage.StorageTier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учёт скачиваний и перенос содержимого между уровнями хранения.
+ * <ul>
+ *     <li>Скачивания считаются в памяти и раз в image.access.flush-interval-ms записываются
+ *     в базу данных одним пакетным запросом, а не отдельным UPDATE на каждое скачивание.</li>
+ *     <li>Содержимое, которое не скачивали дольше storage.tiering.cold-after, переносится в архив
+ *     небольшими пачками; следующий проход продолжает с места остановки.</li>
+ *     <li>Архивное содержимое, которое скачали storage.tiering.promote-after-downloads раз
+ *     за storage.tiering.promote-window, возвращается в основное хранилище.</li>
+ * </ul>
+ * Перенос выполняется, только если storage.tiering.enabled; скачивания учитываются всегда.
+ * Счётчики приблизительные: скачивание, совпавшее с записью пачки, может не попасть в неё.
+ */
+@Service
+@Slf4j
+public class StorageTiering {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${storage.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.tiering.cold-after:30d}")
+    private Duration coldAfter;
+
+    @Value("${storage.tiering.batch-size:500}")
+    private int batchSize;
+
+    @Value("${storage.tiering.promote-after-downloads:3}")
+    private int promoteAfterDownloads;
+
+    @Value("${storage.tiering.promote-window:1d}")
+    private Duration promoteWindow;
+
+    /**
+     * Скачивания, ещё не записанные в базу данных, по ID изображения.
+     */
+    private final ConcurrentMap<Integer, Access> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Скачивания архивного содержимого по ключу за окно storage.tiering.promote-window.
+     */
+    private Cache<String, LongAdder> coldHits;
+
+    /**
+     * Ключ содержимого, после которого продолжается поиск давно не скачиваемого содержимого.
+     */
+    private String lastBlobKey = "";
+
+    @PostConstruct
+    void init() {
+        coldHits = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(promoteWindow)
+                .build();
+    }
+
+    /**
+     * Учитывает скачивание изображения. Вызывается после успешной передачи целого файла
+     * или первого диапазона, поэтому докачка не увеличивает счётчик.
+     *
+     * @param imageId ID скачиваемого изображения.
+     * @param blobKey Ключ его содержимого.
+     */
+    public void recordDownload(Integer imageId, String blobKey) {
+        pending.computeIfAbsent(imageId, id -> new Access(blobKey)).hit();
+    }
+
+    /**
+     * Записывает накопленные скачивания в базу данных и возвращает в основное хранилище
+     * часто скачиваемое архивное содержимое.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${image.access.flush-interval-ms:30000}",
+            initialDelayString = "${image.access.flush-interval-ms:30000}")
+    public synchronized void flush() {
+        List<ImageAccessCount> counts = new ArrayList<>(pending.size());
+        Map<String, Long> downloadsByBlob = new HashMap<>();
+        for (Integer imageId : pending.keySet()) {
+            Access access = pending.remove(imageId);
+            long downloads = access == null ? 0 : access.downloads.sum();
+            if (downloads == 0) {
+                continue;
+            }
+            counts.add(new ImageAccessCount(imageId, downloads, new Date(access.lastAccessed)));
+            if (access.blobKey != null) {
+                downloadsByBlob.merge(access.blobKey, downloads, Long::sum);
+            }
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        imageRepository.addAccessCounts(counts);
+        if (enabled) {
+            downloadsByBlob.forEach(this::promoteIfHot);
+        }
+    }
+
+    /**
+     * Очередной проход переноса в архив: пачка из storage.tiering.batch-size ключей содержимого,
+     * на которое ссылаются только давно не скачиваемые изображения.
+     */
+    @Scheduled(fixedDelayString = "${storage.tiering.interval-ms:600000}",
+            initialDelayString = "${storage.tiering.interval-ms:600000}")
+    public synchronized void demote() {
+        if (!enabled) {
+            return;
+        }
+        // Сначала записываем скачивания, чтобы только что скачанное содержимое не считалось давно не скачиваемым
+        flush();
+        Date cutoff = Date.from(Instant.now().minus(coldAfter));
+        List<String> keys = imageRepository.findIdleBlobKeys(lastBlobKey, cutoff, PageRequest.of(0, batchSize));
+        lastBlobKey = keys.size() < batchSize ? "" : keys.get(keys.size() - 1);
+
+        int demoted = 0;
+        for (String blobKey : keys) {
+            try {
+                if (blobStore.tierOf(blobKey) == StorageTier.HOT && blobStore.moveTo(blobKey, StorageTier.COLD)) {
+                    demoted++;
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось перенести в архив содержимое {}: {}", blobKey, e.getMessage());
+            }
+        }
+        count("demote", demoted);
+        if (demoted > 0) {
+            log.info("Перенесено в архив {} из {} давно не скачиваемых файлов", demoted, keys.size());
+        }
+    }
+
+    private void promoteIfHot(String blobKey, long downloads) {
+        if (blobStore.tierOf(blobKey) != StorageTier.COLD) {
+            return;
+        }
+        LongAdder hits = coldHits.get(blobKey, key -> new LongAdder());
+        hits.add(downloads);
+        if (hits.sum() < promoteAfterDownloads) {
+            return;
+        }
+        coldHits.invalidate(blobKey);
+        try {
+            if (blobStore.moveTo(blobKey, StorageTier.HOT)) {
+                count("promote", 1);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось вернуть из архива содержимое {}: {}", blobKey, e.getMessage());
+        }
+    }
+
+    private void count(String direction, int amount) {
+        if (amount > 0) {
+            meterRegistry.counter("storage.tiering", "direction", direction).increment(amount);
+        }
+    }
+
+    /**
+     * Скачивания одного изображения с последней записи в базу данных.
+     */
+    private static final class Access {
+
+        private final String blobKey;
+
+        private final LongAdder downloads = new LongAdder();
+
+        private volatile long lastAccessed;
+
+        private Access(String blobKey) {
+            this.blobKey = blobKey;
+        }
+
+        private void hit() {
+            downloads.increment();
+            lastAccessed = System.currentTimeMillis();
+        }
+    }
+}
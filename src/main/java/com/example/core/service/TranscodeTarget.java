@@ -0,0 +1,150 @@
+package com.example.core.service;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Формат, ширина и качество, в которых изображение отдаётся при скачивании вместо оригинала.
+ * Перекодированная копия хранится рядом с оригиналом как вариант {@link #variant()}.
+ *
+ * @param format  Формат ImageIO: "jpeg" или "png".
+ * @param width   Ширина в пикселях; 0 — ширина оригинала, но не больше наибольшей из разрешённых.
+ * @param quality Качество JPEG от 5 до 100; для PNG всегда 0.
+ */
+public record TranscodeTarget(String format, int width, int quality) {
+
+    private static final MediaType JPEG = MediaType.IMAGE_JPEG;
+
+    private static final MediaType PNG = MediaType.IMAGE_PNG;
+
+    private static final int QUALITY_STEP = 5;
+
+    /**
+     * Выбирает, в каком виде отдать изображение.
+     * Оригинал отдаётся, если не заданы ширина и качество, а его тип принимается клиентом
+     * не менее охотно, чем JPEG и PNG.
+     * Иначе выбирается формат из JPEG и PNG с наибольшим q в Accept; при равных q —
+     * PNG для оригиналов с возможной прозрачностью (PNG, GIF), иначе JPEG.
+     * Ширина округляется вверх до ближайшей из разрешённых, качество — до кратного 5,
+     * чтобы количество вариантов одного изображения оставалось ограниченным.
+     *
+     * @param contentType    Тип содержимого оригинала.
+     * @param accept         Значение заголовка Accept (может быть null).
+     * @param width          Запрошенная ширина (может быть null).
+     * @param quality        Запрошенное качество JPEG от 1 до 100 (может быть null).
+     * @param widths         Разрешённые значения ширины по возрастанию.
+     * @param defaultQuality Качество JPEG, если оно не задано.
+     * @return Параметры перекодирования или пустой Optional, если отдаётся оригинал.
+     * @throws IllegalArgumentException Если ширина или качество вне допустимого диапазона.
+     */
+    public static Optional<TranscodeTarget> negotiate(String contentType, String accept, Integer width, Integer quality,
+                                                      int[] widths, int defaultQuality) {
+        if (width != null && width <= 0) {
+            throw new IllegalArgumentException("Ширина должна быть положительной: " + width);
+        }
+        if (quality != null && (quality < 1 || quality > 100)) {
+            throw new IllegalArgumentException("Качество должно быть от 1 до 100: " + quality);
+        }
+        List<MediaType> accepted = parseAccept(accept);
+        MediaType original = parseType(contentType);
+        double originalQ = original == null ? 0 : qualityOf(accepted, original);
+        double jpegQ = qualityOf(accepted, JPEG);
+        double pngQ = qualityOf(accepted, PNG);
+        if (originalQ > 0 && Math.max(jpegQ, pngQ) <= originalQ && width == null && quality == null) {
+            return Optional.empty();
+        }
+
+        boolean alpha = PNG.equals(original) || MediaType.IMAGE_GIF.equals(original);
+        if (jpegQ <= 0 && pngQ <= 0) {
+            // Клиент не принимает ни один из форматов, в которые умеем перекодировать
+            return Optional.empty();
+        }
+        boolean png = pngQ > jpegQ || (pngQ == jpegQ && alpha);
+        int targetWidth = width == null ? 0 : roundUp(width, widths);
+        int targetQuality = png ? 0 : roundQuality(quality == null ? defaultQuality : quality);
+        TranscodeTarget target = new TranscodeTarget(png ? "png" : "jpeg", targetWidth, targetQuality);
+        if (target.contentType().equals(contentType) && targetWidth == 0 && quality == null) {
+            return Optional.empty();
+        }
+        return Optional.of(target);
+    }
+
+    /**
+     * @return Имя варианта в хранилище, например {@code t-jpeg-w640-q80}.
+     */
+    public String variant() {
+        return "t-" + format + "-w" + width + (quality > 0 ? "-q" + quality : "");
+    }
+
+    /**
+     * @return MIME-тип перекодированного изображения.
+     */
+    public String contentType() {
+        return "image/" + format;
+    }
+
+    /**
+     * @param fileName Имя файла оригинала.
+     * @return Имя файла с расширением перекодированного формата.
+     */
+    public String fileName(String fileName) {
+        String extension = format.equals("jpeg") ? "jpg" : format;
+        int dot = fileName == null ? -1 : fileName.lastIndexOf('.');
+        String base = fileName == null ? "image" : dot > 0 ? fileName.substring(0, dot) : fileName;
+        return base + "." + extension;
+    }
+
+    private static List<MediaType> parseAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of(MediaType.ALL);
+        }
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of(MediaType.ALL);
+        }
+    }
+
+    private static MediaType parseType(String contentType) {
+        try {
+            return contentType == null ? null : MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Значение q самого конкретного диапазона Accept, включающего тип, или 0, если такого нет.
+     */
+    private static double qualityOf(List<MediaType> accepted, MediaType type) {
+        double quality = 0;
+        int bestSpecificity = -1;
+        for (MediaType range : accepted) {
+            if (!range.includes(type)) {
+                continue;
+            }
+            int specificity = range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+            if (specificity > bestSpecificity) {
+                bestSpecificity = specificity;
+                quality = range.getQualityValue();
+            }
+        }
+        return quality;
+    }
+
+    private static int roundUp(int width, int[] widths) {
+        for (int allowed : widths) {
+            if (allowed >= width) {
+                return allowed;
+            }
+        }
+        return widths[widths.length - 1];
+    }
+
+    private static int roundQuality(int quality) {
+        return Math.max(QUALITY_STEP, Math.round((float) quality / QUALITY_STEP) * QUALITY_STEP);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.core.service;
+
+/**
+ * Исключение, выбрасываемое при обращении заблокированного пользователя к изображениям.
+ */
+public class UserBlockedException extends RuntimeException {
+
+    public UserBlockedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.core.service;
+
+import com.example.core.dto.UserIdentity;
+import com.example.core.model.Users;
+import com.example.core.repository.UsersRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Кэш соответствия email → {@link UserIdentity}.
+ * Избавляет частые запросы (загрузка, скачивание, списки) от обращения к таблице users.
+ * Кэш ограничен по количеству записей, записи устаревают через заданное время;
+ * при блокировке и разблокировке пользователя запись удаляется явно.
+ * Отсутствующие пользователи не кэшируются.
+ */
+@Service
+public class UserIdentityCache {
+
+    private final UsersRepository usersRepository;
+
+    private final Cache<String, UserIdentity> cache;
+
+    public UserIdentityCache(UsersRepository usersRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${user.identity-cache.max-size:10000}") long maxSize,
+                             @Value("${user.identity-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.usersRepository = usersRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "user.identity");
+    }
+
+    /**
+     * Находит сведения о пользователе по email, при промахе загружая их из базы.
+     *
+     * @param email Адрес электронной почты пользователя.
+     * @return Optional, содержащий сведения о пользователе, если он найден.
+     */
+    public Optional<UserIdentity> find(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(email, key -> usersRepository.findIdentityByEmail(key).orElse(null)));
+    }
+
+    /**
+     * Возвращает сведения о пользователе по email.
+     *
+     * @param email Адрес электронной почты пользователя.
+     * @return Сведения о пользователе.
+     * @throws RuntimeException Если пользователь не найден.
+     */
+    public UserIdentity get(String email) {
+        return find(email).orElseThrow(()
+                -> new RuntimeException(String.format("Пользователь с %s не найден!", email)));
+    }
+
+    /**
+     * Помещает в кэш сведения о только что загруженном пользователе.
+     *
+     * @param user Пользователь.
+     */
+    public void put(Users user) {
+        cache.put(user.getEmail(), new UserIdentity(user.getId(), user.getEmail(), user.getRole(), user.isBlocked()));
+    }
+
+    /**
+     * Удаляет из кэша сведения о пользователях с указанными ID.
+     * Внутри транзакции записи удаляются после её фиксации: иначе параллельный запрос
+     * мог бы до фиксации снова поместить в кэш прежнее состояние пользователя.
+     *
+     * @param userIds ID пользователей.
+     */
+    public void invalidateUsers(Collection<Integer> userIds) {
+        Set<Integer> ids = new HashSet<>(userIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.asMap().values().removeIf(identity -> ids.contains(identity.getId()));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.asMap().values().removeIf(identity -> ids.contains(identity.getId()));
+            }
+        });
+    }
+
+    /**
+     * @return Статистика попаданий и промахов кэша.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return Приблизительное количество записей в кэше.
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -1,23 +1,31 @@
 package com.example.core.service;
 
+import com.example.core.dto.BulkModerationResult;
+import com.example.core.dto.DuplicateCluster;
 import com.example.core.dto.UserDto;
-import com.example.core.model.Event;
 import com.example.core.model.Image;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.StorageUsage;
 import com.example.core.model.Users;
+import com.example.core.repository.ImageCursor;
 import com.example.core.repository.ImageRepository;
+import com.example.core.repository.ImageSortField;
+import com.example.core.repository.ImageSpecifications;
 import com.example.core.repository.UsersRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.amqp.core.Message;
-import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Сервис для управления пользователями и изображениями.
@@ -33,22 +41,58 @@ public class UserService {
     private ImageRepository imageRepository;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private NotificationService notificationService;
+
+    @Autowired
+    private UserIdentityCache userIdentityCache;
 
     @Autowired
     private PasswordEncoder encoder;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private ImageMetrics imageMetrics;
+
+    @Autowired
+    private StorageQuotaService storageQuotaService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private BlockedUsers blockedUsers;
+
+    @Value("${moderation.bulk.max-ids:10000}")
+    private int maxBulkIds;
+
+    @Value("${image.duplicates.cluster-limit:1000}")
+    private int maxDuplicateClusters;
 
     /**
      * Регистрация нового пользователя.
      *
      * @param userDto Объект, содержащий данные пользователя для регистрации.
-     * @throws RuntimeException Если email пуст, пользователь с таким email уже существует
-     * или произошла ошибка при отправке сообщения.
+     * @throws RuntimeException Если email пуст или пользователь с таким email уже существует.
      */
+    @Transactional
     public void registerUser(UserDto userDto) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            createUser(userDto);
+            outcome = "success";
+        } finally {
+            sample.stop(Timer.builder("user.register")
+                    .description("Время регистрации пользователя")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    private void createUser(UserDto userDto) {
         if (userDto == null || userDto.getEmail() == null) {
             throw new RuntimeException("Email не может быть пустым!");
         }
@@ -61,61 +105,50 @@ public class UserService {
         user.setPassword(encoder.encode(userDto.getPassword()));
         user.setRole(userDto.getRole());
         usersRepository.save(user);
-        try {
-            Event event = new Event(userDto.getEmail(), "Приветственное сообщение");
-
-            // Сериализация объекта в JSON
-            byte[] messageBody = objectMapper.writeValueAsBytes(event);
-
-            // Установка заголовков
-            MessageProperties messageProperties = new MessageProperties();
-            messageProperties.setContentType("application/json");
+        storageQuotaService.initialize(user.getId());
 
-            // Создание сообщения
-            Message message = new Message(messageBody, messageProperties);
-
-            // Отправка сообщения
-            rabbitTemplate.send("mail", message);
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Произошла ошибка %s", e.getMessage()));
-        }
+        // Приветственное сообщение отправляется после фиксации транзакции
+        notificationService.enqueue(userDto.getEmail(), "Приветственное сообщение");
     }
 
     /**
-     * Получение отфильтрованных изображений для модерации.
+     * Получение страницы отфильтрованных изображений для модерации.
+     * Заданные фильтры применяются одновременно.
      *
      * @param ids       Список ID изображений для фильтрации (необязательно).
      * @param minSize   Минимальный размер изображений для фильтрации (необязательно).
      * @param maxSize   Максимальный размер изображений для фильтрации (необязательно).
      * @param startDate Начальная дата для фильтрации изображений (необязательно).
      * @param endDate   Конечная дата для фильтрации изображений (необязательно).
-     * @param sortBy    Поле, по которому требуется сортировать результаты (необязательно).
+     * @param sortBy    Поле, по которому требуется сортировать результаты ("uploadDate" или "fileSize").
      * @param sortOrder Порядок сортировки результатов (необязательно).
-     * @return Список отфильтрованных изображений.
+     * @param cursor    Курсор следующей страницы из предыдущего ответа (необязательно).
+     * @param pageSize  Размер страницы (необязательно).
+     * @return Страница отфильтрованных изображений.
      */
     @Transactional(readOnly = true)
-    public List<Image> getModeratedImages(
+    public ImagePage getModeratedImages(
             List<Integer> ids,
             Long minSize,
             Long maxSize,
             Date startDate,
             Date endDate,
             String sortBy,
-            String sortOrder) {
+            String sortOrder,
+            String cursor,
+            Integer pageSize) {
 
-        Sort sort = sortOrder.equalsIgnoreCase("DESC") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        ImageSortField sortField = ImageSortField.fromProperty(sortBy);
+        boolean descending = sortOrder.equalsIgnoreCase("DESC");
+        ImageCursor after = ImageCursor.parse(cursor, sortField, descending);
 
-        // Фильтруем изображения
-        if (ids != null && !ids.isEmpty()) {
-            return imageRepository.findByIdIn(ids, sort);
-        } else if (minSize != null && maxSize != null) {
-            return imageRepository.findByFileSizeBetween(minSize, maxSize, sort);
-        } else if (startDate != null && endDate != null) {
-            return imageRepository.findByUploadDateBetween(startDate, endDate, sort);
-        }
-
-        // Если нет параметров фильтрации, возвращаем все изображения
-        return imageRepository.findAll(sort);
+        Timer.Sample sample = imageMetrics.start();
+        // Все заданные фильтры объединяются в один запрос; без фильтров возвращаются все изображения
+        Specification<Image> filter = ImageSpecifications.matching(
+                null, ids, minSize, maxSize, startDate, endDate);
+        ImagePage page = imageRepository.findPage(filter, sortField, descending, after, pageSize);
+        imageMetrics.recordList(sample, "moderator", sortField, ids, minSize, maxSize, startDate, endDate);
+        return page;
     }
 
     /**
@@ -124,10 +157,11 @@ public class UserService {
      * @param id ID пользователя, которого нужно заблокировать.
      * @throws RuntimeException Если пользователь с таким ID не найден.
      */
+    @Transactional
     public void blockedUser(Integer id) {
-        Users user = usersRepository.findById(id).orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-        user.setBlocked(true);
-        usersRepository.save(user);
+        if (setBlocked(List.of(id), true) == 0) {
+            throw new RuntimeException("Пользователь не найден");
+        }
     }
 
     /**
@@ -136,9 +170,129 @@ public class UserService {
      * @param id ID пользователя, которого нужно разблокировать.
      * @throws RuntimeException Если пользователь с таким ID не найден.
      */
+    @Transactional
     public void unblockedUser(Integer id) {
+        if (setBlocked(List.of(id), false) == 0) {
+            throw new RuntimeException("Пользователь не найден");
+        }
+    }
+
+    /**
+     * Массовая блокировка пользователей одним запросом.
+     *
+     * @param ids          ID пользователей; несуществующие ID пропускаются.
+     * @param deleteImages Удалить также все изображения блокируемых пользователей.
+     * @return Количество заблокированных пользователей и удалённых изображений.
+     * @throws IllegalArgumentException Если список ID пуст или слишком велик.
+     */
+    @Transactional
+    public BulkModerationResult blockUsers(Collection<Integer> ids, boolean deleteImages) {
+        Set<Integer> userIds = validateIds(ids);
+        int users = setBlocked(userIds, true);
+        if (!deleteImages) {
+            return new BulkModerationResult(users, 0, 0);
+        }
+        BulkModerationResult deleted = imageService.deleteImagesOfUsers(userIds);
+        return new BulkModerationResult(users, deleted.getImagesDeleted(), deleted.getBytesDeleted());
+    }
+
+    /**
+     * Массовая разблокировка пользователей одним запросом.
+     *
+     * @param ids ID пользователей; несуществующие ID пропускаются.
+     * @return Количество разблокированных пользователей.
+     * @throws IllegalArgumentException Если список ID пуст или слишком велик.
+     */
+    @Transactional
+    public BulkModerationResult unblockUsers(Collection<Integer> ids) {
+        return new BulkModerationResult(setBlocked(validateIds(ids), false), 0, 0);
+    }
+
+    /**
+     * Удаление всех изображений заблокированных пользователей.
+     * Изображения незаблокированных пользователей из списка не затрагиваются.
+     *
+     * @param ids ID пользователей.
+     * @return Количество пользователей, изображения которых удалены, количество и размер изображений.
+     * @throws IllegalArgumentException Если список ID пуст или слишком велик.
+     */
+    @Transactional
+    public BulkModerationResult deleteImagesOfBlockedUsers(Collection<Integer> ids) {
+        List<Integer> blocked = usersRepository.findBlockedIds(validateIds(ids));
+        BulkModerationResult result = imageService.deleteImagesOfUsers(blocked);
+        meterRegistry.counter("user.moderation", "action", "delete-images").increment(blocked.size());
+        return result;
+    }
+
+    /**
+     * Группы похожих изображений (повторные загрузки, пересжатые и уменьшенные копии).
+     *
+     * @param userId      ID пользователя, среди изображений которого ищутся похожие (null — среди всех).
+     * @param maxDistance Наибольшее расстояние Хэмминга между перцептивными хешами, от 0 до 16 (необязательно).
+     * @param limit       Наибольшее количество групп (необязательно, не больше image.duplicates.cluster-limit).
+     * @return Группы похожих изображений, начиная с самых больших.
+     * @throws IllegalArgumentException Если расстояние или количество групп вне допустимых пределов.
+     */
+    public List<DuplicateCluster> findDuplicates(Integer userId, Integer maxDistance, Integer limit) {
+        if (maxDistance != null && (maxDistance < 0 || maxDistance > 16)) {
+            throw new IllegalArgumentException("Расстояние должно быть от 0 до 16");
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Количество групп должно быть положительным");
+        }
+        int clusters = limit == null ? maxDuplicateClusters : Math.min(limit, maxDuplicateClusters);
+        return imageService.findDuplicates(userId, maxDistance, clusters);
+    }
+
+    /**
+     * Меняет состояние блокировки одним UPDATE, без загрузки пользователей и их изображений.
+     *
+     * @return Количество найденных пользователей.
+     */
+    private int setBlocked(Collection<Integer> ids, boolean blocked) {
+        int updated = usersRepository.updateBlocked(ids, blocked);
+        userIdentityCache.invalidateUsers(ids);
+        blockedUsers.update(ids, blocked);
+        meterRegistry.counter("user.moderation", "action", blocked ? "block" : "unblock").increment(updated);
+        return updated;
+    }
+
+    private Set<Integer> validateIds(Collection<Integer> ids) {
+        Set<Integer> unique = ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+        unique.remove(null);
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("Список ID пользователей пуст");
+        }
+        if (unique.size() > maxBulkIds) {
+            throw new IllegalArgumentException("За один запрос можно обработать не больше " + maxBulkIds + " пользователей");
+        }
+        return unique;
+    }
+
+    /**
+     * Получение занятого пользователем места и действующих квот.
+     *
+     * @param id ID пользователя.
+     * @return Занятое место и квоты пользователя.
+     * @throws RuntimeException Если пользователь с таким ID не найден.
+     */
+    public StorageUsage getStorageUsage(Integer id) {
         Users user = usersRepository.findById(id).orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-        user.setBlocked(false);
-        usersRepository.save(user);
+        return storageQuotaService.getUsage(user.getId(), user.getRole());
+    }
+
+    /**
+     * Установка индивидуальной квоты пользователя.
+     *
+     * @param id        ID пользователя.
+     * @param maxBytes  Квота на объём в байтах (null — квота роли).
+     * @param maxImages Квота на количество изображений (null — квота роли).
+     * @return Занятое место и обновлённые квоты пользователя.
+     * @throws RuntimeException Если пользователь с таким ID не найден.
+     */
+    public StorageUsage setStorageQuota(Integer id, Long maxBytes, Integer maxImages) {
+        Users user = usersRepository.findById(id).orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+        storageQuotaService.setQuota(user.getId(), maxBytes, maxImages);
+        return storageQuotaService.getUsage(user.getId(), user.getRole());
     }
 }
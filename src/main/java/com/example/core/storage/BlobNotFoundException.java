@@ -0,0 +1,11 @@
+package com.example.core.storage;
+
+/**
+ * Исключение, выбрасываемое, если содержимое с указанным ключом отсутствует в хранилище.
+ */
+public class BlobNotFoundException extends RuntimeException {
+
+    public BlobNotFoundException(String key) {
+        super(String.format("Содержимое %s не найдено в хранилище", key));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.core.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Хранилище содержимого изображений.
+ * Содержимое адресуется ключом, который выдаёт хранилище при сохранении;
+ * одинаковое содержимое хранится в одном экземпляре.
+ * Содержимое может находиться на одном из уровней {@link StorageTier}; чтение по ключу
+ * не зависит от того, на каком уровне оно лежит.
+ */
+public interface BlobStore {
+
+    /**
+     * Потоково сохраняет содержимое, вычисляя его ключ, и сразу публикует его.
+     * Если такое содержимое уже есть в хранилище, повторно оно не записывается.
+     *
+     * @param in Поток с содержимым. Закрывать его должен вызывающий код.
+     * @return Описание сохранённого содержимого.
+     * @throws IOException Если возникает ошибка при записи.
+     */
+    default StoredBlob put(InputStream in) throws IOException {
+        StagedBlob staged = stage(in);
+        try {
+            return publish(staged);
+        } catch (IOException | RuntimeException e) {
+            discard(staged);
+            throw e;
+        }
+    }
+
+    /**
+     * Потоково записывает содержимое во временный файл и сбрасывает его на диск, вычисляя ключ.
+     * До публикации содержимое недоступно по ключу.
+     *
+     * @param in Поток с содержимым. Закрывать его должен вызывающий код.
+     * @return Записанное, но не опубликованное содержимое.
+     * @throws IOException Если возникает ошибка при записи.
+     */
+    StagedBlob stage(InputStream in) throws IOException;
+
+    /**
+     * Атомарно публикует записанное содержимое под его ключом. Если такое содержимое уже есть,
+     * временный файл удаляется, а время изменения имеющегося обновляется, чтобы сборщик мусора
+     * не удалил его, пока ссылающаяся запись не зафиксирована.
+     *
+     * @param staged Записанное содержимое.
+     * @return Описание опубликованного содержимого.
+     * @throws IOException Если возникает ошибка при переносе.
+     */
+    StoredBlob publish(StagedBlob staged) throws IOException;
+
+    /**
+     * Удаляет временный файл неопубликованного содержимого. Для опубликованного ничего не делает.
+     *
+     * @param staged Записанное содержимое.
+     */
+    void discard(StagedBlob staged);
+
+    /**
+     * Возвращает содержимое по ключу.
+     *
+     * @param key Ключ содержимого.
+     * @return Ресурс для чтения содержимого.
+     * @throws BlobNotFoundException Если содержимого с таким ключом нет.
+     */
+    Resource get(String key);
+
+    /**
+     * Проверяет, есть ли содержимое с указанным ключом.
+     *
+     * @param key Ключ содержимого.
+     * @return true, если содержимое существует, иначе false.
+     */
+    boolean exists(String key);
+
+    /**
+     * Удаляет содержимое по ключу вместе с его вариантами. Отсутствие содержимого ошибкой не считается.
+     *
+     * @param key Ключ содержимого.
+     * @throws IOException Если возникает ошибка при удалении.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Удаляет содержимое вместе с его вариантами, если оно не изменялось после указанного момента.
+     * Недавно записанное или повторно опубликованное содержимое может принадлежать ещё
+     * не зафиксированной загрузке и не удаляется. Проверка и удаление атомарны относительно
+     * {@link #publish} того же ключа: публикация либо продлевает срок до проверки, либо
+     * выполняется после удаления и записывает содержимое заново.
+     *
+     * @param key    Ключ содержимого.
+     * @param cutoff Момент времени; содержимое, изменённое позже, не удаляется.
+     * @return true, если содержимое удалено.
+     * @throws IOException Если возникает ошибка при удалении.
+     */
+    boolean deleteIfUnmodifiedSince(String key, Instant cutoff) throws IOException;
+
+    /**
+     * Ключи содержимого, начинающиеся с указанного префикса (без вариантов).
+     *
+     * @param prefix Первые два шестнадцатеричных символа ключа.
+     * @return Ключи содержимого.
+     * @throws IOException Если возникает ошибка при чтении каталога.
+     */
+    List<String> listKeys(String prefix) throws IOException;
+
+    /**
+     * @param key Ключ содержимого.
+     * @return Уровень, с которого читается содержимое, или null, если содержимого нет.
+     */
+    StorageTier tierOf(String key);
+
+    /**
+     * Переносит содержимое на указанный уровень. Варианты содержимого остаются в основном хранилище.
+     *
+     * @param key  Ключ содержимого.
+     * @param tier Уровень хранения.
+     * @return true, если содержимое перенесено; false, если оно уже на этом уровне или его нет.
+     * @throws IOException Если возникает ошибка при переносе.
+     */
+    boolean moveTo(String key, StorageTier tier) throws IOException;
+
+    /**
+     * Удаляет временные файлы, оставшиеся от прерванных записей.
+     *
+     * @param cutoff Момент времени; файлы, изменённые позже, могут принадлежать идущей записи и не удаляются.
+     * @return Количество удалённых файлов.
+     * @throws IOException Если возникает ошибка при чтении каталога.
+     */
+    int purgeStaging(Instant cutoff) throws IOException;
+
+    /**
+     * Сохраняет производный вариант содержимого (например, уменьшенную копию изображения).
+     * Вариант хранится рядом с исходным содержимым и заменяет ранее сохранённый вариант с тем же именем.
+     *
+     * @param key     Ключ исходного содержимого.
+     * @param variant Имя варианта (строчные латинские буквы, цифры и дефис).
+     * @param content Содержимое варианта.
+     * @throws IOException Если возникает ошибка при записи.
+     */
+    void putVariant(String key, String variant, byte[] content) throws IOException;
+
+    /**
+     * Возвращает производный вариант содержимого.
+     *
+     * @param key     Ключ исходного содержимого.
+     * @param variant Имя варианта.
+     * @return Ресурс для чтения варианта.
+     * @throws BlobNotFoundException Если такого варианта нет.
+     */
+    Resource getVariant(String key, String variant);
+
+    /**
+     * Проверяет, сохранён ли производный вариант содержимого.
+     *
+     * @param key     Ключ исходного содержимого.
+     * @param variant Имя варианта.
+     * @return true, если вариант существует, иначе false.
+     */
+    boolean variantExists(String key, String variant);
+}
@@ -0,0 +1,458 @@
+package com.example.core.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище содержимого в локальной файловой системе с адресацией по содержимому.
+ * Ключом служит SHA-256 содержимого, файлы раскладываются по каталогам
+ * по первым байтам хеша: {@code blobs/ab/cd/abcd...}.
+ * Производные варианты лежат в том же каталоге: {@code blobs/ab/cd/abcd....thumb}.
+ * Содержимое сначала записывается и сбрасывается на диск в {@code tmp/}, а под ключом
+ * появляется только атомарным переименованием.
+ * <p>
+ * Давно не скачиваемое содержимое переносится в архивный каталог storage.cold.dir
+ * (по умолчанию {@code cold/} рядом с {@code blobs/}) с той же раскладкой по хешу; чтение ищет файл
+ * сначала в основном каталоге, затем в архивном. При возврате в основной каталог архивная копия
+ * сохраняется, поэтому повторный перенос в архив сводится к удалению основной копии.
+ */
+@Component
+@Slf4j
+public class LocalBlobStore implements BlobStore {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Pattern VARIANT_PATTERN = Pattern.compile("[a-z0-9-]{1,32}");
+
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("[0-9a-f]{2}");
+
+    private static final String STAGING_SUFFIX = ".part";
+
+    /**
+     * Количество блокировок, между которыми распределяются ключи.
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    private final Path blobRoot;
+
+    private final Path tempRoot;
+
+    private final Path coldRoot;
+
+    private final Path coldTempRoot;
+
+    private final boolean fsync;
+
+    /**
+     * Блокировки ключей: публикация и условное удаление одного ключа не выполняются одновременно.
+     */
+    private final Object[] keyLocks = new Object[LOCK_STRIPES];
+
+    public LocalBlobStore(@Value("${upload.dir}") String uploadDir,
+                          @Value("${storage.cold.dir:}") String coldDir,
+                          @Value("${storage.fsync:true}") boolean fsync) {
+        Path root = Paths.get(uploadDir);
+        this.blobRoot = root.resolve("blobs");
+        this.tempRoot = root.resolve("tmp");
+        this.coldRoot = coldDir == null || coldDir.isBlank() ? root.resolve("cold") : Paths.get(coldDir);
+        // Временные файлы переноса лежат на той же файловой системе, что и архив, чтобы переименование было атомарным
+        this.coldTempRoot = coldRoot.resolve("tmp");
+        this.fsync = fsync;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Записывает содержимое во временный файл, попутно вычисляя SHA-256, и сбрасывает его на диск,
+     * чтобы после сбоя под ключом никогда не оказался частично записанный файл.
+     */
+    @Override
+    public StagedBlob stage(InputStream in) throws IOException {
+        Files.createDirectories(tempRoot);
+        Path temp = Files.createTempFile(tempRoot, "upload-", STAGING_SUFFIX);
+        try {
+            MessageDigest digest = newSha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream os = Channels.newOutputStream(channel)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    os.write(buffer, 0, read);
+                    size += read;
+                }
+                if (fsync) {
+                    channel.force(true);
+                }
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            return new StagedBlob(key, size, key, temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Переносит временный файл в каталог по хешу атомарным переименованием и сбрасывает на диск запись каталога.
+     * Если файл с таким хешем уже существует в основном или архивном каталоге, временный файл удаляется.
+     */
+    @Override
+    public StoredBlob publish(StagedBlob staged) throws IOException {
+        synchronized (lockOf(staged.key())) {
+            return publishLocked(staged);
+        }
+    }
+
+    private StoredBlob publishLocked(StagedBlob staged) throws IOException {
+        String key = staged.key();
+        Path target = pathOf(key);
+        Path existing = locate(key);
+        if (existing != null && touch(existing)) {
+            Files.deleteIfExists(staged.file());
+            return new StoredBlob(key, staged.size(), staged.checksum(), true);
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(staged.file(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Такое же содержимое параллельно опубликовал другой запрос
+            touch(target);
+            Files.deleteIfExists(staged.file());
+            return new StoredBlob(key, staged.size(), staged.checksum(), true);
+        }
+        syncDirectory(target.getParent());
+        return new StoredBlob(key, staged.size(), staged.checksum(), false);
+    }
+
+    @Override
+    public void discard(StagedBlob staged) {
+        try {
+            Files.deleteIfExists(staged.file());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}: {}", staged.file(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Resource get(String key) {
+        Path path = locate(key);
+        if (path == null) {
+            throw new BlobNotFoundException(key);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return locate(key) != null;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Path path = pathOf(key);
+        if (Files.isDirectory(path.getParent())) {
+            try (DirectoryStream<Path> variants = Files.newDirectoryStream(path.getParent(), key + ".*")) {
+                for (Path variant : variants) {
+                    Files.deleteIfExists(variant);
+                }
+            }
+        }
+        boolean deleted = Files.deleteIfExists(path);
+        if (Files.deleteIfExists(coldPathOf(key)) || deleted) {
+            log.debug("Удалено содержимое {}", key);
+        }
+    }
+
+    /**
+     * Выполняется под блокировкой ключа, которую берёт и {@link #publish}: иначе публикация,
+     * продлившая срок между проверкой времени изменения и удалением, вернула бы ссылку на удалённый файл.
+     * Блокировка действует в пределах одного процесса.
+     */
+    @Override
+    public boolean deleteIfUnmodifiedSince(String key, Instant cutoff) throws IOException {
+        synchronized (lockOf(key)) {
+            return deleteIfUnmodifiedSinceLocked(key, cutoff);
+        }
+    }
+
+    private boolean deleteIfUnmodifiedSinceLocked(String key, Instant cutoff) throws IOException {
+        Path path = locate(key);
+        if (path == null) {
+            return false;
+        }
+        try {
+            if (Files.getLastModifiedTime(path).toInstant().isAfter(cutoff)) {
+                return false;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        delete(key);
+        return true;
+    }
+
+    @Override
+    public List<String> listKeys(String prefix) throws IOException {
+        if (prefix == null || !PREFIX_PATTERN.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("Некорректный префикс ключа: " + prefix);
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        listKeys(blobRoot.resolve(prefix), keys);
+        listKeys(coldRoot.resolve(prefix), keys);
+        return List.copyOf(keys);
+    }
+
+    private static void listKeys(Path shard, Set<String> keys) throws IOException {
+        if (!Files.isDirectory(shard)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(shard, 2)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> KEY_PATTERN.matcher(name).matches())
+                    .forEach(keys::add);
+        }
+    }
+
+    @Override
+    public StorageTier tierOf(String key) {
+        if (Files.exists(pathOf(key))) {
+            return StorageTier.HOT;
+        }
+        return Files.exists(coldPathOf(key)) ? StorageTier.COLD : null;
+    }
+
+    /**
+     * В архив содержимое переносится переименованием, а если архив на другой файловой системе —
+     * копированием со сбросом на диск и последующим удалением основной копии.
+     * В основной каталог содержимое копируется, архивная копия остаётся. Время изменения
+     * файла сохраняется, чтобы перенос не продлевал срок, который учитывает сборщик мусора.
+     */
+    @Override
+    public boolean moveTo(String key, StorageTier tier) throws IOException {
+        Path hot = pathOf(key);
+        Path cold = coldPathOf(key);
+        if (tier == StorageTier.HOT) {
+            if (Files.exists(hot) || !Files.exists(cold)) {
+                return false;
+            }
+            copyAtomically(cold, hot, tempRoot);
+            return true;
+        }
+        if (!Files.exists(hot)) {
+            return false;
+        }
+        if (!Files.exists(cold)) {
+            Files.createDirectories(cold.getParent());
+            try {
+                Files.move(hot, cold, StandardCopyOption.ATOMIC_MOVE);
+                syncDirectory(cold.getParent());
+                return true;
+            } catch (AtomicMoveNotSupportedException e) {
+                copyAtomically(hot, cold, coldTempRoot);
+            } catch (NoSuchFileException e) {
+                // Содержимое удалили, пока оно переносилось
+                return false;
+            }
+        }
+        return Files.deleteIfExists(hot);
+    }
+
+    /**
+     * Копирует файл через временный файл в tempDir, сбрасывает копию на диск и атомарно переносит её на место.
+     */
+    private void copyAtomically(Path source, Path target, Path tempDir) throws IOException {
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "move-", STAGING_SUFFIX);
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (fsync) {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            // Время изменения читается перед переносом: публикация такого же содержимого могла его обновить
+            Files.setLastModifiedTime(temp, Files.getLastModifiedTime(source));
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    @Override
+    public int purgeStaging(Instant cutoff) throws IOException {
+        return purgeStaging(tempRoot, cutoff) + purgeStaging(coldTempRoot, cutoff);
+    }
+
+    private static int purgeStaging(Path tempRoot, Instant cutoff) throws IOException {
+        if (!Files.isDirectory(tempRoot)) {
+            return 0;
+        }
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempRoot, "*" + STAGING_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (!Files.getLastModifiedTime(file).toInstant().isAfter(cutoff) && Files.deleteIfExists(file)) {
+                        purged++;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Запись завершилась, пока мы читали каталог
+                }
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Записывает вариант во временный файл и атомарно переносит его на место,
+     * поэтому читатели никогда не видят частично записанный вариант.
+     */
+    @Override
+    public void putVariant(String key, String variant, byte[] content) throws IOException {
+        Path target = variantPathOf(key, variant);
+        Files.createDirectories(tempRoot);
+        Path temp = Files.createTempFile(tempRoot, "variant-", STAGING_SUFFIX);
+        try {
+            Files.write(temp, content, StandardOpenOption.TRUNCATE_EXISTING);
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public Resource getVariant(String key, String variant) {
+        Path path = variantPathOf(key, variant);
+        if (!Files.exists(path)) {
+            throw new BlobNotFoundException(key + "." + variant);
+        }
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public boolean variantExists(String key, String variant) {
+        return Files.exists(variantPathOf(key, variant));
+    }
+
+    /**
+     * Вычисляет путь к файлу по ключу: {@code blobs/ab/cd/abcd...}.
+     *
+     * @param key Ключ содержимого (SHA-256 в шестнадцатеричном виде).
+     * @return Путь к файлу содержимого.
+     * @throws IllegalArgumentException Если ключ имеет некорректный формат.
+     */
+    private Path pathOf(String key) {
+        return pathOf(blobRoot, key);
+    }
+
+    /**
+     * Вычисляет путь к архивной копии содержимого.
+     *
+     * @throws IllegalArgumentException Если ключ имеет некорректный формат.
+     */
+    private Path coldPathOf(String key) {
+        return pathOf(coldRoot, key);
+    }
+
+    private static Path pathOf(Path root, String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Некорректный ключ содержимого: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    /**
+     * @return Путь к основной копии содержимого, если она есть, иначе к архивной; null, если содержимого нет.
+     * @throws IllegalArgumentException Если ключ имеет некорректный формат.
+     */
+    private Path locate(String key) {
+        Path hot = pathOf(key);
+        if (Files.exists(hot)) {
+            return hot;
+        }
+        Path cold = coldPathOf(key);
+        return Files.exists(cold) ? cold : null;
+    }
+
+    /**
+     * Вычисляет путь к варианту содержимого: {@code blobs/ab/cd/abcd....variant}.
+     *
+     * @throws IllegalArgumentException Если ключ или имя варианта имеют некорректный формат.
+     */
+    private Path variantPathOf(String key, String variant) {
+        if (variant == null || !VARIANT_PATTERN.matcher(variant).matches()) {
+            throw new IllegalArgumentException("Некорректное имя варианта: " + variant);
+        }
+        return pathOf(key).resolveSibling(key + "." + variant);
+    }
+
+    private Object lockOf(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Обновляет время изменения содержимого.
+     *
+     * @return false, если файл был удалён.
+     */
+    private static boolean touch(Path path) throws IOException {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Сбрасывает на диск запись каталога, чтобы переименование пережило сбой питания.
+     * Не все файловые системы и ОС позволяют открыть каталог, поэтому ошибка только журналируется.
+     */
+    private void syncDirectory(Path directory) {
+        if (!fsync) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Не удалось сбросить на диск каталог {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.core.storage;
+
+import java.nio.file.Path;
+
+/**
+ * Содержимое, записанное во временный файл хранилища, но ещё не опубликованное под своим ключом.
+ * Публикуется через {@link BlobStore#publish(StagedBlob)} или отбрасывается через {@link BlobStore#discard(StagedBlob)}.
+ *
+ * @param key      Ключ, под которым содержимое будет доступно после публикации.
+ * @param size     Размер содержимого в байтах.
+ * @param checksum SHA-256 содержимого в шестнадцатеричном виде.
+ * @param file     Временный файл с содержимым.
+ */
+public record StagedBlob(String key, long size, String checksum, Path file) {
+}
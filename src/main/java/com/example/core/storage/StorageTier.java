@@ -0,0 +1,18 @@
+package com.example.core.storage;
+
+/**
+ * Уровень хранения содержимого.
+ */
+public enum StorageTier {
+
+    /**
+     * Основное хранилище для часто скачиваемого и недавно загруженного содержимого.
+     */
+    HOT,
+
+    /**
+     * Архивное хранилище для содержимого, которое давно не скачивали
+     * (например, каталог на более медленном и дешёвом диске).
+     */
+    COLD
+}
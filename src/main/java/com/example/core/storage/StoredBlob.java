@@ -0,0 +1,12 @@
+package com.example.core.storage;
+
+/**
+ * Результат сохранения содержимого в {@link BlobStore}.
+ *
+ * @param key          Ключ, по которому содержимое доступно в хранилище.
+ * @param size         Размер содержимого в байтах.
+ * @param checksum     SHA-256 содержимого в шестнадцатеричном виде.
+ * @param deduplicated true, если такое содержимое уже было в хранилище и повторно не записывалось.
+ */
+public record StoredBlob(String key, long size, String checksum, boolean deduplicated) {
+}
@@ -0,0 +1,159 @@
+package com.example.core.web;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Неблокирующая передача диапазона файла в ответ (Servlet 3.1 {@link WriteListener}).
+ * Поток запроса освобождается сразу после начала передачи; очередной фрагмент файла
+ * пишется, только когда сокет готов принять данные, поэтому медленный клиент
+ * не занимает поток Tomcat на всё время скачивания.
+ */
+@Slf4j
+public final class NonBlockingFileTransfer implements WriteListener, AsyncListener {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final AsyncContext asyncContext;
+
+    private final ServletOutputStream out;
+
+    private final FileChannel channel;
+
+    private final Runnable onComplete;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private long position;
+
+    private long remaining;
+
+    private NonBlockingFileTransfer(AsyncContext asyncContext, ServletOutputStream out, FileChannel channel,
+                                    long start, long count, Runnable onComplete) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.channel = channel;
+        this.position = start;
+        this.remaining = count;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * Переводит запрос в асинхронный режим и начинает передачу.
+     * Заголовки и статус ответа должны быть выставлены до вызова.
+     *
+     * @param request    Запрос; должен поддерживать асинхронную обработку.
+     * @param response   Ответ.
+     * @param file       Передаваемый файл.
+     * @param start      Смещение первого байта.
+     * @param count      Количество байт.
+     * @param timeoutMs  Максимальное время передачи в миллисекундах.
+     * @param onComplete Действие после успешной передачи всех байт.
+     * @throws IOException Если файл не удалось открыть.
+     */
+    public static void start(HttpServletRequest request, HttpServletResponse response, Path file,
+                             long start, long count, long timeoutMs, Runnable onComplete) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(timeoutMs);
+            ServletOutputStream out = response.getOutputStream();
+            NonBlockingFileTransfer transfer =
+                    new NonBlockingFileTransfer(asyncContext, out, channel, start, count, onComplete);
+            asyncContext.addListener(transfer);
+            out.setWriteListener(transfer);
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (out.isReady()) {
+            if (remaining == 0) {
+                complete(true);
+                return;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Файл короче ожидаемого: осталось " + remaining + " байт");
+            }
+            out.write(buffer.array(), 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // Обычно клиент закрыл соединение, не дочитав ответ
+        log.debug("Передача файла прервана: {}", t.getMessage());
+        complete(false);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        log.debug("Передача файла не завершилась за отведённое время, осталось {} байт", remaining);
+        complete(false);
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        closeChannel();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void complete(boolean success) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        closeChannel();
+        if (success) {
+            try {
+                onComplete.run();
+            } catch (RuntimeException e) {
+                log.warn("Ошибка после передачи файла: {}", e.getMessage());
+            }
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // Контейнер уже завершил запрос
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Не удалось закрыть файл: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.core.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Ограничение частоты и объёма запросов на загрузку и скачивание изображений.
+ * Для каждого пользователя (по email вошедшего пользователя, без входа — по адресу клиента)
+ * ведутся два маркерных ведра: запросы в секунду и байты в секунду. Загрузка списывает
+ * байты по Content-Length до обработки, скачивание — по размеру ответа (200 или 206) после неё.
+ * Дополнительно ограничено общее количество одновременных загрузок.
+ * Отклонённые запросы получают 429 Too Many Requests с заголовком Retry-After.
+ * Фильтр выполняется сразу после Spring Security, но до разбора тела запроса.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Pattern UPLOAD_PATH = Pattern.compile("/image/upload(/batch)?");
+
+    private static final Pattern DOWNLOAD_PATH = Pattern.compile("/image/\\d+/(download|rendition/[^/]+)");
+
+    private final boolean enabled;
+
+    private final double requestsPerSecond;
+
+    private final double burstRequests;
+
+    private final double bytesPerSecond;
+
+    private final double burstBytes;
+
+    private final Semaphore uploadPermits;
+
+    private final Cache<String, UserLimits> limits;
+
+    private final Counter rejectedRequests;
+
+    private final Counter rejectedBytes;
+
+    private final Counter rejectedConcurrency;
+
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.requests-per-second:20}") double requestsPerSecond,
+                           @Value("${rate-limit.burst-requests:40}") double burstRequests,
+                           @Value("${rate-limit.bytes-per-second:20MB}") DataSize bytesPerSecond,
+                           @Value("${rate-limit.burst-bytes:200MB}") DataSize burstBytes,
+                           @Value("${rate-limit.max-concurrent-uploads:32}") int maxConcurrentUploads,
+                           @Value("${rate-limit.max-tracked-users:100000}") long maxTrackedUsers) {
+        this.enabled = enabled;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burstRequests = burstRequests;
+        this.bytesPerSecond = bytesPerSecond.toBytes();
+        this.burstBytes = burstBytes.toBytes();
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
+        // Ведро, не использовавшееся дольше времени полного пополнения, заново создаётся полным
+        long refillSeconds = (long) Math.ceil(Math.max(burstRequests / requestsPerSecond,
+                this.burstBytes / this.bytesPerSecond));
+        this.limits = Caffeine.newBuilder()
+                .maximumSize(maxTrackedUsers)
+                .expireAfterAccess(Duration.ofSeconds(Math.max(1, refillSeconds)))
+                .build();
+        this.rejectedRequests = rejected(meterRegistry, "requests");
+        this.rejectedBytes = rejected(meterRegistry, "bytes");
+        this.rejectedConcurrency = rejected(meterRegistry, "concurrency");
+        meterRegistry.gauge("image.upload.in-flight", uploadPermits,
+                permits -> maxConcurrentUploads - permits.availablePermits());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = path(request);
+        return !UPLOAD_PATH.matcher(path).matches() && !DOWNLOAD_PATH.matcher(path).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean upload = UPLOAD_PATH.matcher(path(request)).matches();
+        UserLimits user = limits.get(key(request), k -> new UserLimits(System.nanoTime()));
+        long now = System.nanoTime();
+
+        long wait = user.requests.tryConsume(1, now);
+        if (wait > 0) {
+            rejectedRequests.increment();
+            reject(response, upload, wait, "Ошибка: слишком много запросов");
+            return;
+        }
+        wait = user.bytes.nanosUntilAvailable(now);
+        if (wait > 0) {
+            rejectedBytes.increment();
+            reject(response, upload, wait, "Ошибка: превышен допустимый объём передачи данных");
+            return;
+        }
+
+        if (!upload) {
+            ContentLengthResponse wrapped = new ContentLengthResponse(response);
+            try {
+                chain.doFilter(request, wrapped);
+            } finally {
+                // Размер ответа известен только после его обработки, поэтому байты списываются в долг;
+                // диапазон (206) списывается так же, иначе Range: bytes=0- обходил бы ограничение
+                int status = response.getStatus();
+                if (wrapped.contentLength >= 0
+                        && (status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_PARTIAL_CONTENT)) {
+                    user.bytes.consume(wrapped.contentLength, System.nanoTime());
+                }
+            }
+            return;
+        }
+
+        if (!uploadPermits.tryAcquire()) {
+            rejectedConcurrency.increment();
+            reject(response, true, TimeUnit.SECONDS.toNanos(1),
+                    "Ошибка: сервер перегружен загрузками, повторите позже");
+            return;
+        }
+        try {
+            long length = request.getContentLengthLong();
+            if (length > 0) {
+                user.bytes.consume(length, now);
+            }
+            chain.doFilter(request, response);
+        } finally {
+            uploadPermits.release();
+        }
+    }
+
+    private String key(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? principal.getName() : "addr:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, boolean upload, long waitNanos, String message)
+            throws IOException {
+        if (upload) {
+            // Тело загрузки не читается, поэтому соединение после ответа закрывается
+            response.setHeader("Connection", "close");
+        }
+        long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("http.rate-limited")
+                .description("Запросы, отклонённые ограничителем частоты")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запоминает объявленный размер ответа. Заголовок Content-Length контейнер записывает
+     * только при отправке ответа, а при неблокирующей передаче фильтр завершается раньше.
+     */
+    private static final class ContentLengthResponse extends HttpServletResponseWrapper {
+
+        private long contentLength = -1;
+
+        private ContentLengthResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            super.setContentLength(len);
+            contentLength = len;
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            super.setContentLengthLong(len);
+            contentLength = len;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            super.setHeader(name, value);
+            capture(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            super.addHeader(name, value);
+            capture(name, value);
+        }
+
+        private void capture(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+                try {
+                    contentLength = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    // Некорректное значение не учитывается
+                }
+            }
+        }
+    }
+
+    /**
+     * Ведра одного пользователя.
+     */
+    private final class UserLimits {
+
+        private final TokenBucket requests;
+
+        private final TokenBucket bytes;
+
+        private UserLimits(long now) {
+            this.requests = new TokenBucket(burstRequests, requestsPerSecond, now);
+            this.bytes = new TokenBucket(burstBytes, bytesPerSecond, now);
+        }
+    }
+}
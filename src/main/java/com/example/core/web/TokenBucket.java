@@ -0,0 +1,87 @@
+package com.example.core.web;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Неблокирующее маркерное ведро (token bucket).
+ * Состояние (количество маркеров и время последнего пополнения) заменяется целиком
+ * через compare-and-set, поэтому параллельные запросы одного пользователя не берут блокировок.
+ * Допускается «долг»: {@link #consume} может увести баланс в минус, и тогда новые
+ * запросы ждут, пока долг не будет погашен пополнением.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private final AtomicReference<State> state;
+
+    /**
+     * @param capacity        Максимальное количество маркеров (допустимый всплеск).
+     * @param tokensPerSecond Скорость пополнения в маркерах в секунду.
+     * @param now             Текущее время по {@link System#nanoTime()}.
+     */
+    TokenBucket(double capacity, double tokensPerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.state = new AtomicReference<>(new State(capacity, now));
+    }
+
+    /**
+     * Забирает маркеры, если их достаточно.
+     *
+     * @param tokens Количество маркеров.
+     * @param now    Текущее время по {@link System#nanoTime()}.
+     * @return 0, если маркеры забраны; иначе время ожидания в наносекундах.
+     */
+    long tryConsume(double tokens, long now) {
+        while (true) {
+            State current = state.get();
+            double available = refill(current, now);
+            if (available < tokens) {
+                return nanosFor(tokens - available);
+            }
+            if (state.compareAndSet(current, new State(available - tokens, Math.max(now, current.timestamp())))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Забирает маркеры без проверки, при необходимости уводя баланс в минус.
+     *
+     * @param tokens Количество маркеров.
+     * @param now    Текущее время по {@link System#nanoTime()}.
+     */
+    void consume(double tokens, long now) {
+        while (true) {
+            State current = state.get();
+            double available = refill(current, now);
+            if (state.compareAndSet(current, new State(available - tokens, Math.max(now, current.timestamp())))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param now Текущее время по {@link System#nanoTime()}.
+     * @return 0, если баланс положителен; иначе время до погашения долга в наносекундах.
+     */
+    long nanosUntilAvailable(long now) {
+        double available = refill(state.get(), now);
+        return available > 0 ? 0 : nanosFor(-available + 1);
+    }
+
+    private double refill(State current, long now) {
+        long elapsed = Math.max(0, now - current.timestamp());
+        return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+    }
+
+    private long nanosFor(double tokens) {
+        return (long) Math.ceil(tokens / tokensPerNano);
+    }
+
+    private record State(double tokens, long timestamp) {
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.core.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Ранняя проверка запросов на загрузку изображений.
+ * Запросы с заявленным размером больше допустимого и запросы не в формате multipart
+ * отклоняются по заголовкам, до разбора тела и до записи чего-либо на диск.
+ * Запросы без Content-Length ограничиваются лимитами spring.servlet.multipart.*.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UploadSizeFilter extends OncePerRequestFilter {
+
+    private static final String UPLOAD_PATH = "/image/upload";
+
+    private static final String BATCH_UPLOAD_PATH = "/image/upload/batch";
+
+    /**
+     * Запас на заголовки частей и поле email в запросе с одним файлом.
+     */
+    private static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+    private final long maxSingleUploadBytes;
+
+    private final long maxBatchUploadBytes;
+
+    public UploadSizeFilter(@Value("${spring.servlet.multipart.max-file-size:1MB}") DataSize maxFileSize,
+                            @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize maxRequestSize) {
+        this.maxSingleUploadBytes = Math.min(maxFileSize.toBytes() + MULTIPART_OVERHEAD, maxRequestSize.toBytes());
+        this.maxBatchUploadBytes = maxRequestSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals(UPLOAD_PATH) && !path.equals(BATCH_UPLOAD_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            reject(response, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE,
+                    "Ошибка: ожидается запрос multipart/form-data");
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        long limit = path.equals(BATCH_UPLOAD_PATH) ? maxBatchUploadBytes : maxSingleUploadBytes;
+        long length = request.getContentLengthLong();
+        if (length > limit) {
+            reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Ошибка: размер запроса " + length + " байт превышает допустимые " + limit + " байт");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, int status, String message) throws IOException {
+        // Тело запроса не читается, поэтому соединение после ответа закрывается
+        response.setHeader("Connection", "close");
+        response.setStatus(status);
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.core.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+class ImageFormatTest {
+
+    @Test
+    public void testDetect_RecognizesSupportedSignatures() {
+        Assertions.assertEquals(Optional.of(ImageFormat.JPEG),
+                detect(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}));
+        Assertions.assertEquals(Optional.of(ImageFormat.PNG),
+                detect(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D}));
+        Assertions.assertEquals(Optional.of(ImageFormat.GIF), detect("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        Assertions.assertEquals(Optional.of(ImageFormat.WEBP),
+                detect("RIFF$\u0000\u0000\u0000WEBPVP8 ".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void testDetect_RejectsUnknownAndTruncatedContent() {
+        // Заголовок RIFF без WEBP (например, WAV) и текстовый файл
+        Assertions.assertEquals(Optional.empty(), detect("RIFF$\u0000\u0000\u0000WAVE".getBytes(StandardCharsets.ISO_8859_1)));
+        Assertions.assertEquals(Optional.empty(), detect("<html>".getBytes(StandardCharsets.US_ASCII)));
+        // Обрезанная сигнатура PNG и пустое содержимое
+        Assertions.assertEquals(Optional.empty(), detect(new byte[]{(byte) 0x89, 'P', 'N'}));
+        Assertions.assertEquals(Optional.empty(), detect(new byte[0]));
+    }
+
+    private static Optional<ImageFormat> detect(byte[] content) {
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        int length = Math.min(content.length, header.length);
+        System.arraycopy(content, 0, header, 0, length);
+        return ImageFormat.detect(header, length);
+    }
+}
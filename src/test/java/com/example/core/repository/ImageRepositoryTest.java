@@ -0,0 +1,170 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ImageAccessCount;
+import com.example.core.dto.ImagePage;
+import com.example.core.dto.UserImageUsage;
+import com.example.core.model.Image;
+import com.example.core.model.Roles;
+import com.example.core.model.Users;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+@DataJpaTest
+class ImageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    private Users owner;
+
+    @BeforeEach
+    public void setUp() {
+        owner = new Users();
+        owner.setEmail("owner@example.com");
+        owner.setPassword("password");
+        owner.setRole(Roles.USER);
+        entityManager.persist(owner);
+
+        Users other = new Users();
+        other.setEmail("other@example.com");
+        other.setPassword("password");
+        other.setRole(Roles.USER);
+        entityManager.persist(other);
+
+        persistImage(owner, "a.png", 100L, new Date(1_000));
+        persistImage(owner, "b.png", 300L, new Date(2_000));
+        persistImage(other, "c.png", 200L, new Date(3_000));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testFindPage_CombinesAllFilters() {
+        Specification<Image> filter = ImageSpecifications.matching(
+                owner.getId(), null, 200L, null, new Date(1_500), new Date(5_000));
+
+        ImagePage page = imageRepository.findPage(filter, ImageSortField.UPLOAD_DATE, false, null, 10);
+
+        Assertions.assertEquals(1, page.getItems().size());
+        Assertions.assertEquals("b.png", page.getItems().get(0).getName());
+        Assertions.assertEquals(300L, page.getItems().get(0).getFileSize());
+    }
+
+    @Test
+    public void testFindPage_WithoutFiltersReturnsAllOwnImages() {
+        Specification<Image> filter = ImageSpecifications.matching(
+                owner.getId(), null, null, null, null, null);
+
+        ImagePage page = imageRepository.findPage(filter, ImageSortField.FILE_SIZE, true, null, 10);
+
+        Assertions.assertEquals(2, page.getItems().size());
+        Assertions.assertEquals("b.png", page.getItems().get(0).getName());
+        Assertions.assertEquals("a.png", page.getItems().get(1).getName());
+        Assertions.assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void testFindPage_WalksAllPagesByCursor() {
+        ImagePage first = imageRepository.findPage(null, ImageSortField.FILE_SIZE, true, null, 2);
+
+        Assertions.assertEquals(2, first.getItems().size());
+        Assertions.assertEquals("b.png", first.getItems().get(0).getName());
+        Assertions.assertEquals("c.png", first.getItems().get(1).getName());
+        Assertions.assertNotNull(first.getNextCursor());
+
+        ImageCursor after = ImageCursor.parse(first.getNextCursor(), ImageSortField.FILE_SIZE, true);
+        ImagePage second = imageRepository.findPage(null, ImageSortField.FILE_SIZE, true, after, 2);
+
+        Assertions.assertEquals(1, second.getItems().size());
+        Assertions.assertEquals("a.png", second.getItems().get(0).getName());
+        Assertions.assertNull(second.getNextCursor());
+    }
+
+    @Test
+    public void testParseCursor_RejectsCursorOfAnotherSort() {
+        ImagePage first = imageRepository.findPage(null, ImageSortField.FILE_SIZE, true, null, 1);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ImageCursor.parse(first.getNextCursor(), ImageSortField.UPLOAD_DATE, true));
+    }
+
+    @Test
+    public void testInsertAll_StoresMetadataInBatch() {
+        Image first = newImage(owner, "d.png", 400L, new Date(4_000));
+        Image second = newImage(owner, "e.png", 500L, new Date(5_000));
+
+        imageRepository.insertAll(List.of(first, second));
+
+        ImagePage page = imageRepository.findPage(ImageSpecifications.ownedBy(owner.getId()),
+                ImageSortField.UPLOAD_DATE, true, null, 10);
+        Assertions.assertEquals(4, page.getItems().size());
+        Assertions.assertEquals("e.png", page.getItems().get(0).getName());
+        Assertions.assertEquals(500L, page.getItems().get(0).getFileSize());
+    }
+
+    @Test
+    public void testDeleteByUserIdIn_KeepsOtherUsersContentReferenced() {
+        Users other = entityManager.getEntityManager()
+                .createQuery("select u from Users u where u.email = 'other@example.com'", Users.class)
+                .getSingleResult();
+
+        List<UserImageUsage> usage = imageRepository.findUsageByUserIdIn(List.of(owner.getId()));
+        Assertions.assertEquals(1, usage.size());
+        Assertions.assertEquals(400L, usage.get(0).getBytes());
+        Assertions.assertEquals(2L, usage.get(0).getCount());
+        Assertions.assertEquals(2, imageRepository.deleteByUserIdIn(List.of(owner.getId())));
+
+        Assertions.assertEquals(0, imageRepository.countByUserId(owner.getId()));
+        Assertions.assertEquals(1, imageRepository.countByUserId(other.getId()));
+        Assertions.assertEquals(Set.of("blob-c.png"),
+                imageRepository.findReferencedBlobKeys(List.of("blob-a.png", "blob-b.png", "blob-c.png")));
+    }
+
+    @Test
+    public void testAddAccessCounts_MakesContentNoLongerIdle() {
+        Integer imageId = imageRepository.findBlobRefsAfter(0, PageRequest.of(0, 1)).get(0).getImageId();
+        Date cutoff = new Date(2_500);
+        Assertions.assertEquals(List.of("blob-a.png", "blob-b.png"),
+                imageRepository.findIdleBlobKeys("", cutoff, PageRequest.of(0, 10)));
+        Assertions.assertEquals(List.of("blob-b.png"),
+                imageRepository.findIdleBlobKeys("blob-a.png", cutoff, PageRequest.of(0, 10)));
+
+        imageRepository.addAccessCounts(List.of(new ImageAccessCount(imageId, 2, new Date(10_000))));
+        imageRepository.addAccessCounts(List.of(new ImageAccessCount(imageId, 1, new Date(9_000))));
+
+        Image image = imageRepository.findById(imageId).orElseThrow();
+        Assertions.assertEquals(3L, image.getDownloadCount());
+        Assertions.assertEquals(10_000L, image.getLastAccessed().getTime());
+        Assertions.assertEquals(List.of("blob-b.png"),
+                imageRepository.findIdleBlobKeys("", cutoff, PageRequest.of(0, 10)));
+    }
+
+    private void persistImage(Users user, String name, Long size, Date uploadDate) {
+        entityManager.persist(newImage(user, name, size, uploadDate));
+    }
+
+    private Image newImage(Users user, String name, Long size, Date uploadDate) {
+        Image image = new Image();
+        image.setName(name);
+        image.setOriginalFileName(name);
+        image.setFileSize(size);
+        image.setContentType("image/png");
+        image.setBlobKey("blob-" + name);
+        image.setUploadDate(uploadDate);
+        image.setUser(user);
+        return image;
+    }
+}
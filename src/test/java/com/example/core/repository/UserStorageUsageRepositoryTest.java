@@ -0,0 +1,80 @@
+package com.example.core.repository;
+
+import com.example.core.model.Image;
+import com.example.core.model.Roles;
+import com.example.core.model.UserStorageUsage;
+import com.example.core.model.Users;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+
+@DataJpaTest
+class UserStorageUsageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserStorageUsageRepository usageRepository;
+
+    @Test
+    public void testReserve_StopsAtRoleQuota() {
+        entityManager.persistAndFlush(new UserStorageUsage(1, 0, 0, null, null));
+
+        Assertions.assertEquals(1, usageRepository.reserve(1, 600, 1, 1000, 10));
+        // Вторая загрузка превысила бы квоту по объёму
+        Assertions.assertEquals(0, usageRepository.reserve(1, 600, 1, 1000, 10));
+        Assertions.assertEquals(1, usageRepository.reserve(1, 400, 1, 1000, 10));
+
+        entityManager.clear();
+        UserStorageUsage usage = usageRepository.findById(1).orElseThrow();
+        Assertions.assertEquals(1000, usage.getBytesUsed());
+        Assertions.assertEquals(2, usage.getImageCount());
+    }
+
+    @Test
+    public void testReserve_UserQuotaOverridesRoleQuota() {
+        entityManager.persistAndFlush(new UserStorageUsage(2, 0, 0, 5000L, 1));
+
+        Assertions.assertEquals(1, usageRepository.reserve(2, 3000, 1, 1000, 10));
+        // Индивидуальная квота разрешает только одно изображение
+        Assertions.assertEquals(0, usageRepository.reserve(2, 1, 1, 1000, 10));
+
+        Assertions.assertEquals(1, usageRepository.release(2, 3000, 1));
+        entityManager.clear();
+        UserStorageUsage usage = usageRepository.findById(2).orElseThrow();
+        Assertions.assertEquals(0, usage.getBytesUsed());
+        Assertions.assertEquals(0, usage.getImageCount());
+    }
+
+    @Test
+    public void testReserve_ReturnsZeroWithoutCounters() {
+        Assertions.assertEquals(0, usageRepository.reserve(3, 1, 1, 1000, 10));
+    }
+
+    @Test
+    public void testRecount_MatchesRemainingImages() {
+        Users user = new Users();
+        user.setEmail("recount@example.com");
+        user.setPassword("password");
+        user.setRole(Roles.USER);
+        entityManager.persist(user);
+        Image image = new Image();
+        image.setName("a.png");
+        image.setFileSize(700L);
+        image.setUser(user);
+        entityManager.persist(image);
+        // Счётчики разошлись с таблицей images, например после массового удаления
+        entityManager.persistAndFlush(new UserStorageUsage(user.getId(), 5000, 9, null, null));
+
+        Assertions.assertEquals(1, usageRepository.recount(List.of(user.getId())));
+        entityManager.clear();
+        UserStorageUsage usage = usageRepository.findById(user.getId()).orElseThrow();
+        Assertions.assertEquals(700, usage.getBytesUsed());
+        Assertions.assertEquals(1, usage.getImageCount());
+    }
+}
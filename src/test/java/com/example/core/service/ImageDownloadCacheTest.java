@@ -0,0 +1,73 @@
+package com.example.core.service;
+
+import com.example.core.dto.ImageDownloadInfo;
+import com.example.core.repository.ImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+class ImageDownloadCacheTest {
+
+    private static final String KEY = "a".repeat(64);
+
+    @Test
+    public void testInfo_LoadsMetadataOnceUntilInvalidated() {
+        ImageRepository repository = Mockito.mock(ImageRepository.class);
+        Mockito.when(repository.findDownloadInfo(1)).thenReturn(Optional.of(
+                new ImageDownloadInfo(1, 10, KEY, KEY, "image/png", "a.png", 5L)));
+        ImageDownloadCache cache = newCache(repository, DataSize.ofKilobytes(1));
+
+        Assertions.assertEquals(KEY, cache.info(1).getBlobKey());
+        Assertions.assertEquals(KEY, cache.info(1).getBlobKey());
+        Mockito.verify(repository, Mockito.times(1)).findDownloadInfo(1);
+
+        cache.invalidateUsers(List.of(10));
+        cache.info(1);
+        Mockito.verify(repository, Mockito.times(2)).findDownloadInfo(1);
+        Assertions.assertThrows(RuntimeException.class, () -> cache.info(2));
+    }
+
+    @Test
+    public void testPutContent_CachesOnlySmallFilesUntilReclaimed() throws IOException {
+        ImageDownloadCache cache = newCache(Mockito.mock(ImageRepository.class), DataSize.ofBytes(8));
+
+        ByteBuffer stored = cache.putContent(KEY, resource("content"));
+        Assertions.assertEquals("content", text(stored));
+        // Каждый вызов получает собственную позицию в общем буфере
+        Assertions.assertEquals("content", text(cache.getContent(KEY)));
+        Assertions.assertEquals("content", text(cache.getContent(KEY)));
+        Assertions.assertTrue(cache.getContent(KEY).isDirect());
+
+        Assertions.assertNull(cache.putContent(KEY + ".thumb", resource("too large")));
+        Assertions.assertNull(cache.getContent(KEY + ".thumb"));
+
+        cache.putContent(KEY + ".thumb", resource("thumb"));
+        cache.invalidateContent(List.of(KEY));
+        Assertions.assertNull(cache.getContent(KEY));
+        Assertions.assertNull(cache.getContent(KEY + ".thumb"));
+    }
+
+    private static ImageDownloadCache newCache(ImageRepository repository, DataSize maxEntryBytes) {
+        return new ImageDownloadCache(repository, new SimpleMeterRegistry(), 100, 300,
+                DataSize.ofKilobytes(64), maxEntryBytes);
+    }
+
+    private static ByteArrayResource resource(String text) {
+        return new ByteArrayResource(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
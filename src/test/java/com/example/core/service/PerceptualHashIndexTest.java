@@ -0,0 +1,91 @@
+package com.example.core.service;
+
+import com.example.core.dto.DuplicateCluster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+class PerceptualHashIndexTest {
+
+    @Test
+    public void testCompute_ResizedAndReencodedCopyIsClose() throws IOException {
+        long original = PerceptualHash.compute(jpeg(picture(800, 600, false)), Long.MAX_VALUE).getAsLong();
+        long resized = PerceptualHash.compute(jpeg(picture(200, 150, false)), Long.MAX_VALUE).getAsLong();
+        long other = PerceptualHash.compute(jpeg(picture(800, 600, true)), Long.MAX_VALUE).getAsLong();
+
+        Assertions.assertTrue(PerceptualHash.distance(original, resized) <= 4,
+                "distance=" + PerceptualHash.distance(original, resized));
+        Assertions.assertTrue(PerceptualHash.distance(original, other) > 16,
+                "distance=" + PerceptualHash.distance(original, other));
+    }
+
+    @Test
+    public void testFindSimilar_ReturnsOnlyHashesWithinDistanceOfSameUser() {
+        PerceptualHashIndex index = new PerceptualHashIndex(null, new SimpleMeterRegistry(), false);
+        index.add(1, 10, 0b0000L);
+        index.add(2, 10, 0b0011L);
+        index.add(3, 10, 0b1111_1111L);
+        index.add(4, 20, 0b0001L);
+
+        Assertions.assertEquals(List.of(1, 2), index.findSimilar(0b0001L, 1, 10));
+        Assertions.assertEquals(List.of(4, 1, 2), index.findSimilar(0b0001L, 1, null));
+
+        index.remove(1);
+        Assertions.assertEquals(List.of(2), index.findSimilar(0b0001L, 1, 10));
+
+        // Цепочка 2 - 4 (расстояние 1) объединяет изображения разных пользователей
+        List<DuplicateCluster> clusters = index.clusters(1, null, 10);
+        Assertions.assertEquals(1, clusters.size());
+        Assertions.assertEquals(List.of(2, 4), clusters.get(0).getImageIds());
+        Assertions.assertEquals(List.of(10, 20), clusters.get(0).getUserIds());
+
+        index.removeUsers(List.of(20));
+        Assertions.assertTrue(index.clusters(1, null, 10).isEmpty());
+        Assertions.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testFindSimilar_FindsDifferencesSpreadOverAllChunks() {
+        PerceptualHashIndex index = new PerceptualHashIndex(null, new SimpleMeterRegistry(), false);
+        // По одному отличающемуся биту в каждой 16-битной части и ещё два во второй: расстояние 6
+        long near = 1L | 1L << 16 | 1L << 17 | 1L << 18 | 1L << 32 | 1L << 48;
+        index.add(1, 10, near);
+        index.add(2, 10, near | 1L << 63);
+
+        Assertions.assertEquals(List.of(1), index.findSimilar(0L, 6, 10));
+        Assertions.assertEquals(List.of(1, 2), index.findSimilar(0L, 7, null));
+        Assertions.assertTrue(index.findSimilar(0L, 5, null).isEmpty());
+    }
+
+    /**
+     * Градиент с кругом; mirrored отражает картинку по горизонтали, меняя направление перепадов яркости.
+     */
+    private static BufferedImage picture(int width, int height, boolean mirrored) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, mirrored ? Color.WHITE : Color.BLACK,
+                    width, 0, mirrored ? Color.BLACK : Color.WHITE));
+            g.fillRect(0, 0, width, height);
+            g.setColor(Color.RED);
+            g.fillOval(width / 4, height / 4, width / 3, height / 3);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static ByteArrayInputStream jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
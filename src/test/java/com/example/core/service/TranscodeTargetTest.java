@@ -0,0 +1,46 @@
+package com.example.core.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+class TranscodeTargetTest {
+
+    private static final int[] WIDTHS = {320, 640, 1280};
+
+    @Test
+    public void testNegotiate_ReturnsOriginalWhenAcceptedAndNoParameters() {
+        Assertions.assertTrue(negotiate("image/png", null, null, null).isEmpty());
+        Assertions.assertTrue(negotiate("image/png", "image/*", null, null).isEmpty());
+        Assertions.assertTrue(negotiate("image/webp", "image/webp,*/*;q=0.8", null, null).isEmpty());
+        // Клиент не принимает ни оригинал, ни форматы, в которые можно перекодировать
+        Assertions.assertTrue(negotiate("image/webp", "image/avif", null, null).isEmpty());
+    }
+
+    @Test
+    public void testNegotiate_PicksFormatByAcceptAndRoundsParameters() {
+        Assertions.assertEquals(Optional.of(new TranscodeTarget("jpeg", 0, 85)),
+                negotiate("image/png", "image/jpeg", null, null));
+        Assertions.assertEquals(Optional.of(new TranscodeTarget("jpeg", 0, 85)),
+                negotiate("image/png", "image/png;q=0.5, image/*", null, null));
+        Assertions.assertEquals(Optional.of(new TranscodeTarget("png", 640, 0)),
+                negotiate("image/gif", "*/*", 500, 40));
+        Assertions.assertEquals(Optional.of(new TranscodeTarget("jpeg", 1280, 40)),
+                negotiate("image/jpeg", "*/*", 5000, 42));
+
+        TranscodeTarget target = negotiate("image/png", "image/jpeg", 320, 3).orElseThrow();
+        Assertions.assertEquals("t-jpeg-w320-q5", target.variant());
+        Assertions.assertEquals("photo.jpg", target.fileName("photo.png"));
+    }
+
+    @Test
+    public void testNegotiate_RejectsInvalidParameters() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> negotiate("image/png", null, 0, null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> negotiate("image/png", null, null, 101));
+    }
+
+    private static Optional<TranscodeTarget> negotiate(String contentType, String accept, Integer width, Integer quality) {
+        return TranscodeTarget.negotiate(contentType, accept, width, quality, WIDTHS, 85);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.core.storage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+class LocalBlobStoreTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @Test
+    public void testStage_ContentIsVisibleOnlyAfterPublish() throws IOException {
+        LocalBlobStore store = new LocalBlobStore(uploadDir.toString(), "", true);
+        StagedBlob staged = store.stage(content("first"));
+        Assertions.assertFalse(store.exists(staged.key()));
+        Assertions.assertTrue(Files.exists(staged.file()));
+
+        StoredBlob stored = store.publish(staged);
+        Assertions.assertFalse(stored.deduplicated());
+        Assertions.assertTrue(store.exists(staged.key()));
+        Assertions.assertFalse(Files.exists(staged.file()));
+        Assertions.assertEquals(List.of(staged.key()), store.listKeys(staged.key().substring(0, 2)));
+
+        // Отброшенная запись не оставляет файлов, повторная публикация того же содержимого не пишет его заново
+        StagedBlob rolledBack = store.stage(content("second"));
+        store.discard(rolledBack);
+        Assertions.assertFalse(Files.exists(rolledBack.file()));
+        Assertions.assertFalse(store.exists(rolledBack.key()));
+        Assertions.assertTrue(store.publish(store.stage(content("first"))).deduplicated());
+    }
+
+    @Test
+    public void testDeleteIfUnmodifiedSince_KeepsRecentContentAndStaging() throws IOException {
+        LocalBlobStore store = new LocalBlobStore(uploadDir.toString(), "", false);
+        String key = store.put(content("blob")).key();
+        StagedBlob pending = store.stage(content("pending"));
+        Instant past = Instant.now().minusSeconds(3600);
+
+        Assertions.assertFalse(store.deleteIfUnmodifiedSince(key, past));
+        Assertions.assertEquals(0, store.purgeStaging(past));
+        Assertions.assertTrue(store.exists(key));
+        Assertions.assertTrue(Files.exists(pending.file()));
+
+        Instant future = Instant.now().plusSeconds(1);
+        Assertions.assertTrue(store.deleteIfUnmodifiedSince(key, future));
+        Assertions.assertEquals(1, store.purgeStaging(future));
+        Assertions.assertFalse(store.exists(key));
+        Assertions.assertFalse(Files.exists(pending.file()));
+    }
+
+    @Test
+    public void testMoveTo_ContentStaysReadableOnBothTiers() throws IOException {
+        LocalBlobStore store = new LocalBlobStore(uploadDir.toString(), uploadDir.resolve("archive").toString(), false);
+        String key = store.put(content("archived")).key();
+        Path hot = uploadDir.resolve("blobs").resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+        FileTime modified = FileTime.fromMillis(Instant.now().minusSeconds(7200).toEpochMilli());
+        Files.setLastModifiedTime(hot, modified);
+
+        Assertions.assertTrue(store.moveTo(key, StorageTier.COLD));
+        Assertions.assertFalse(store.moveTo(key, StorageTier.COLD));
+        Assertions.assertEquals(StorageTier.COLD, store.tierOf(key));
+        Assertions.assertEquals("archived", new String(store.get(key).getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(List.of(key), store.listKeys(key.substring(0, 2)));
+
+        Assertions.assertTrue(store.moveTo(key, StorageTier.HOT));
+        Assertions.assertEquals(StorageTier.HOT, store.tierOf(key));
+        // Перенос не продлевает срок, который учитывает сборщик мусора
+        Assertions.assertEquals(modified, Files.getLastModifiedTime(hot));
+        Assertions.assertTrue(store.moveTo(key, StorageTier.COLD));
+        Assertions.assertTrue(store.publish(store.stage(content("archived"))).deduplicated());
+
+        store.delete(key);
+        Assertions.assertNull(store.tierOf(key));
+        Assertions.assertTrue(store.listKeys(key.substring(0, 2)).isEmpty());
+    }
+
+    private static ByteArrayInputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.core.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+class RateLimitFilterTest {
+
+    @Test
+    public void testRangedDownload_IsChargedAgainstByteBudget() throws ServletException, IOException {
+        RateLimitFilter filter = new RateLimitFilter(new SimpleMeterRegistry(), true, 100, 100,
+                DataSize.ofBytes(1), DataSize.ofKilobytes(1), 1, 100);
+
+        // Range: bytes=0- отдаёт всё изображение со статусом 206
+        MockHttpServletResponse ranged = download(filter);
+        Assertions.assertEquals(HttpStatus.PARTIAL_CONTENT.value(), ranged.getStatus());
+
+        MockHttpServletResponse next = download(filter);
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), next.getStatus());
+        Assertions.assertNotNull(next.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void testAsyncDownload_IsChargedBeforeResponseIsWritten() throws ServletException, IOException {
+        RateLimitFilter filter = new RateLimitFilter(new SimpleMeterRegistry(), true, 100, 100,
+                DataSize.ofBytes(1), DataSize.ofKilobytes(1), 1, 100);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image/1/download");
+        request.setAsyncSupported(true);
+        // Как Tomcat: Content-Length попадает в заголовки только при отправке ответа
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public String getHeader(String name) {
+                return HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !isCommitted() ? null : super.getHeader(name);
+            }
+        };
+
+        // Неблокирующая передача: фильтр завершается сразу после startAsync, ещё ничего не записав
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                resp.setStatus(HttpServletResponse.SC_OK);
+                resp.setContentLengthLong(10_000);
+                req.startAsync();
+            }
+        }));
+        Assertions.assertFalse(response.isCommitted());
+
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), download(filter).getStatus());
+    }
+
+    private static MockHttpServletResponse download(RateLimitFilter filter) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/image/1/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setContentLengthLong(10_000);
+                resp.getOutputStream().write(new byte[10_000]);
+            }
+        }));
+        return response;
+    }
+}
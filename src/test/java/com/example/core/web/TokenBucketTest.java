@@ -0,0 +1,35 @@
+package com.example.core.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testTryConsume_AllowsBurstThenRefillsAtRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        Assertions.assertEquals(0, bucket.tryConsume(1, 0));
+        Assertions.assertEquals(0, bucket.tryConsume(1, 0));
+        // Ведро пусто: следующий маркер появится через секунду
+        Assertions.assertEquals(SECOND, bucket.tryConsume(1, 0));
+        Assertions.assertEquals(0, bucket.tryConsume(1, SECOND));
+        // Пополнение не превышает ёмкость ведра
+        Assertions.assertEquals(0, bucket.tryConsume(2, 10 * SECOND));
+        Assertions.assertTrue(bucket.tryConsume(1, 10 * SECOND) > 0);
+    }
+
+    @Test
+    public void testConsume_DebtDelaysNextRequest() {
+        TokenBucket bucket = new TokenBucket(100, 100, 0);
+        Assertions.assertEquals(0, bucket.nanosUntilAvailable(0));
+        bucket.consume(300, 0);
+        // Долг 200 маркеров гасится за две секунды с небольшим
+        long wait = bucket.nanosUntilAvailable(0);
+        Assertions.assertTrue(wait > 2 * SECOND && wait <= 2 * SECOND + SECOND / 100, "wait=" + wait);
+        Assertions.assertEquals(0, bucket.nanosUntilAvailable(3 * SECOND));
+    }
+}